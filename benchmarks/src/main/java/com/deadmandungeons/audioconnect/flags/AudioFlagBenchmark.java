@@ -0,0 +1,85 @@
+package com.deadmandungeons.audioconnect.flags;
+
+import com.sk89q.worldguard.protection.flags.InvalidFlagFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of parsing command input and unmarshalling stored values of the <code>audio</code>
+ * and <code>audio-delay</code> flags, which happens for every flagged region when WorldGuard loads its regions
+ * @author Jon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioFlagBenchmark {
+
+    private AudioTrackFlag audioTrackFlag;
+    private AudioDelayFlag audioDelayFlag;
+
+    private final Map<String, Object> audioTrackValue = new HashMap<>();
+    private final Map<String, Object> audioDelayValue = new HashMap<>();
+
+    @Setup
+    public void setUp() {
+        audioTrackFlag = BenchmarkFlags.audioTrackFlag();
+        audioDelayFlag = BenchmarkFlags.audioDelayFlag();
+
+        audioTrackValue.put("audio", "forest");
+        audioTrackValue.put("track", "background");
+        audioTrackValue.put("time", "night");
+        audioDelayValue.put("range", "20-60");
+        audioDelayValue.put("track", "background");
+    }
+
+    @Benchmark
+    public AudioTrack parseAudioTrack() throws InvalidFlagFormat {
+        return audioTrackFlag.parseInput("forest");
+    }
+
+    @Benchmark
+    public AudioTrack parseAudioTrackProperties() throws InvalidFlagFormat {
+        return audioTrackFlag.parseInput("forest:track=background:time=night");
+    }
+
+    @Benchmark
+    public AudioTrack unmarshalAudioTrack() {
+        return audioTrackFlag.unmarshal("forest");
+    }
+
+    @Benchmark
+    public AudioTrack unmarshalAudioTrackProperties() {
+        return audioTrackFlag.unmarshal(audioTrackValue);
+    }
+
+    @Benchmark
+    public AudioDelay parseAudioDelay() throws InvalidFlagFormat {
+        return audioDelayFlag.parseInput("20-60");
+    }
+
+    @Benchmark
+    public AudioDelay parseAudioDelayProperties() throws InvalidFlagFormat {
+        return audioDelayFlag.parseInput("20-60:track=background");
+    }
+
+    @Benchmark
+    public AudioDelay unmarshalAudioDelay() {
+        return audioDelayFlag.unmarshal(audioDelayValue);
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.deadmandungeons.audioconnect.flags;
+
+import com.deadmandungeons.audioconnect.AudioConnect;
+import com.deadmandungeons.audioconnect.AudioConnectClient;
+import org.objenesis.Objenesis;
+import org.objenesis.ObjenesisStd;
+
+import java.lang.reflect.Field;
+
+/**
+ * The flags obtain the plugin instance when they are constructed, which does not exist without a server.
+ * This creates flags that are instead bound to a plugin which was never enabled, and so is never connected
+ * to the AudioConnect server. Only the input of a connected plugin is checked against its audio list.
+ * @author Jon
+ */
+final class BenchmarkFlags {
+
+    private static final Objenesis objenesis = new ObjenesisStd();
+
+    private BenchmarkFlags() {
+    }
+
+    static AudioTrackFlag audioTrackFlag() {
+        return bind(objenesis.newInstance(AudioTrackFlag.class));
+    }
+
+    static AudioDelayFlag audioDelayFlag() {
+        return bind(objenesis.newInstance(AudioDelayFlag.class));
+    }
+
+    private static <T> T bind(T flag) {
+        AudioConnect plugin = objenesis.newInstance(AudioConnect.class);
+        setField(AudioConnect.class, plugin, "client", objenesis.newInstance(AudioConnectClient.class));
+        setField(flag.getClass(), flag, "plugin", plugin);
+        return flag;
+    }
+
+    private static void setField(Class<?> type, Object instance, String name, Object value) {
+        try {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(instance, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to set " + type.getSimpleName() + "." + name, e);
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.deadmandungeons.audioconnect.flags;
+
+import com.deadmandungeons.connect.commons.messenger.exceptions.IdentifierSyntaxException;
+import com.sk89q.worldguard.protection.flags.InvalidFlagFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the {@link FlagInput} scanner, compared with the <code>String.split()</code> parsing it replaced
+ * @author Jon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlagInputBenchmark {
+
+    @Param({"forest", "forest:track=background", "forest:track=background:time=night"})
+    public String input;
+
+    @Benchmark
+    public void scan(Blackhole blackhole) throws InvalidFlagFormat {
+        FlagInput properties = new FlagInput(input, "id", "Invalid format");
+        while (properties.next()) {
+            blackhole.consume(properties.isKey("track"));
+            blackhole.consume(properties.getValue());
+        }
+    }
+
+    @Benchmark
+    public void split(Blackhole blackhole) {
+        String[] properties = input.split(":");
+        for (int i = 0; i < properties.length; i++) {
+            String[] property = properties[i].split("=");
+            blackhole.consume(property.length == 1 && i == 0 ? "id" : property[0]);
+            blackhole.consume(property[property.length - 1]);
+        }
+    }
+
+    @Benchmark
+    public void validateIdentifier() throws IdentifierSyntaxException {
+        FlagInput.validateIdentifier("forest");
+    }
+
+}
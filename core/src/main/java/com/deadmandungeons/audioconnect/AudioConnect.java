@@ -0,0 +1,221 @@
+package com.deadmandungeons.audioconnect;
+
+import com.deadmandungeons.audioconnect.command.CommandHandler;
+import com.deadmandungeons.audioconnect.compat.WorldGuardAdapter;
+import com.deadmandungeons.audioconnect.flags.AudioDelay;
+import com.deadmandungeons.audioconnect.flags.AudioDelayFlag;
+import com.deadmandungeons.audioconnect.flags.AudioTrack;
+import com.deadmandungeons.audioconnect.flags.AudioTrackFlag;
+import com.deadmandungeons.audioconnect.region.AudioRegionIndex;
+import com.deadmandungeons.audioconnect.region.AudioResolver;
+import com.deadmandungeons.audioconnect.region.RegionSaveQueue;
+import com.deadmandungeons.connect.commons.ConnectUtils;
+import com.deadmandungeons.deadmanplugin.DeadmanPlugin;
+import com.deadmandungeons.deadmanplugin.Messenger;
+import com.sk89q.worldguard.protection.flags.SetFlag;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.UUID;
+
+/**
+ * The main plugin class.<br>
+ * The instance of this class can be obtained by {@link #getInstance()}
+ * @author Jon
+ */
+public final class AudioConnect extends DeadmanPlugin {
+
+    private final AudioConnectConfig config = new AudioConnectConfig();
+    private final AudioUpdateQueue audioUpdateQueue = new AudioUpdateQueue(this);
+    private final AudioList audioList = new AudioList(getLogger(), audioUpdateQueue);
+    private final boolean spigot = ConnectUtils.checkClass("org.spigotmc.SpigotConfig");
+
+    private WorldGuardAdapter worldGuardAdapter;
+    private SetFlag<AudioTrack> audioFlag;
+    private SetFlag<AudioDelay> audioDelayFlag;
+    private AudioRegionIndex regionIndex;
+    private RegionSaveQueue regionSaveQueue;
+    private AudioResolver audioResolver;
+    private DayTimeWatcher dayTimeWatcher;
+    private PlayerAudioTracker playerTracker;
+
+    private Messenger messenger;
+    private AudioConnectClient client;
+
+    /**
+     * @return the AudioConnect plugin instance
+     */
+    public static AudioConnect getInstance() {
+        return getDeadmanPlugin(AudioConnect.class);
+    }
+
+    @Override
+    protected void onPluginLoad() {
+        worldGuardAdapter = WorldGuardAdapter.getInstance();
+        audioFlag = worldGuardAdapter.initSetFlag("audio", new AudioTrackFlag());
+        audioDelayFlag = worldGuardAdapter.initSetFlag("audio-delay", new AudioDelayFlag());
+        worldGuardAdapter.installFlags(audioFlag, audioDelayFlag);
+    }
+
+    @Override
+    protected void onPluginEnable() {
+        worldGuardAdapter.initRegionAdapter();
+        getLogger().info("Successfully initialized WorldGuard adapter");
+
+        regionIndex = new AudioRegionIndex(this, worldGuardAdapter, audioFlag, audioDelayFlag);
+        regionIndex.start();
+        regionSaveQueue = new RegionSaveQueue(this);
+        audioUpdateQueue.start();
+
+        setConfig(config);
+
+        dayTimeWatcher = new DayTimeWatcher(this);
+        audioResolver = new AudioResolver(config, audioList, dayTimeWatcher);
+        playerTracker = new PlayerAudioTracker(this, regionIndex, audioResolver);
+        playerTracker.start();
+        dayTimeWatcher.start(playerTracker);
+
+        messenger = new Messenger(this, config.getLocaleFile());
+
+        getCommand("ac").setExecutor(new CommandHandler(this, messenger, config.getCommandCooldown()));
+
+        Bukkit.getScheduler().runTaskTimer(this, new ConnectAnnouncement(), 0, config.getAnnounceFrequency() * 20);
+
+        client = new AudioConnectClient(this, config, audioList, playerTracker);
+
+        if (config.validate()) {
+            client.connect();
+        }
+    }
+
+    @Override
+    protected void onPluginDisable() {
+        client.shutdown().awaitUninterruptibly();
+        playerTracker.shutdown();
+        audioUpdateQueue.shutdown();
+        regionSaveQueue.shutdown();
+        regionIndex.stop();
+        dayTimeWatcher.stop();
+    }
+
+    @Override
+    public void reloadConfig() {
+        super.reloadConfig();
+
+        if (messenger != null && !messenger.getLangFile().equals(config.getLocaleFile())) {
+            messenger.setLangFile(config.getLocaleFile());
+        }
+        if (regionIndex != null) {
+            // The default track ID may have changed which invalidates all resolved audio
+            regionIndex.invalidateAll();
+        }
+    }
+
+    /**
+     * Useful in checking if the spigot API is available.
+     * @return <code>true</code> if the server is running on Spigot, and <code>false</code> otherwise
+     */
+    public boolean isSpigot() {
+        return spigot;
+    }
+
+    /**
+     * @return the AudioConnectConfig instance containing parsed plugin configuration values
+     */
+    public AudioConnectConfig getConfiguration() {
+        return config;
+    }
+
+    /**
+     * @return the AudioList instance containing the available audio IDs for the configured account
+     */
+    public AudioList getAudioList() {
+        return audioList;
+    }
+
+    /**
+     * @return the AudioConnectClient instance responsible for interfacing with the configured AudioConnect server
+     */
+    public AudioConnectClient getClient() {
+        return client;
+    }
+
+    /**
+     * @return the Messenger instance responsible for obtaining and sending plugin messages to the user
+     */
+    public Messenger getMessenger() {
+        return messenger;
+    }
+
+    /**
+     * @return the WorldGuardAdapter instance for the current WorldGuard plugin installation
+     */
+    public WorldGuardAdapter getWorldGuardAdapter() {
+        return worldGuardAdapter;
+    }
+
+    /**
+     * @return the custom <code>audio</code> WorldGuard flag instance
+     */
+    public SetFlag<AudioTrack> getAudioFlag() {
+        return audioFlag;
+    }
+
+    /**
+     * @return the custom <code>audio-delay</code> WorldGuard flag instance
+     */
+    public SetFlag<AudioDelay> getAudioDelayFlag() {
+        return audioDelayFlag;
+    }
+
+    /**
+     * @return the AudioRegionIndex instance containing the WorldGuard regions with audio flags for each world
+     */
+    public AudioRegionIndex getRegionIndex() {
+        return regionIndex;
+    }
+
+    /**
+     * @return the RegionSaveQueue instance that asynchronously saves the WorldGuard region changes made by AudioConnect
+     */
+    public RegionSaveQueue getRegionSaveQueue() {
+        return regionSaveQueue;
+    }
+
+    /**
+     * @param playerId the UUID of the player to obtain the connect URL for
+     * @return the web client URL to connect as the player with the given UUID
+     */
+    public String getPlayerConnectUrl(UUID playerId) {
+        String webappUrl = config.getConnectionWebappUrl().toString();
+        String serverId = ConnectUtils.encodeUuidBase64(config.getConnectionServerId());
+        String encodedPlayerId = ConnectUtils.encodeUuidBase64(playerId);
+
+        return webappUrl + "/connect?s=" + serverId + "&u=" + encodedPlayerId;
+    }
+
+
+    private class ConnectAnnouncement implements Runnable {
+
+        @Override
+        public void run() {
+            if (!client.isConnected()) {
+                return;
+            }
+
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                if (!client.isPlayerConnected(player.getUniqueId())) {
+                    String announcement = messenger.getMessage("misc.announcement", true);
+                    String connectUrl = getPlayerConnectUrl(player.getUniqueId());
+                    String connectDetails = messenger.getMessage("misc.connect-details", true, connectUrl);
+
+                    messenger.sendMessage(player, "misc.top-bar");
+                    player.sendMessage(announcement + connectDetails);
+                    messenger.sendMessage(player, "misc.bottom-bar");
+                }
+            }
+        }
+
+    }
+
+}
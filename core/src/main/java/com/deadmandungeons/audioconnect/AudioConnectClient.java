@@ -85,7 +85,7 @@ public class AudioConnectClient {
     // objects accessed on main server thread only
     private final PlayerStatusListener playerStatusListener = new PlayerStatusListener();
     private final PlayerAudioDataWriter playerDataWriter;
-    private final PlayerScheduler playerScheduler; // thread safe but best used on main thread
+    private final PlayerScheduler playerScheduler; // thread safe, and applied immediately on main thread
 
     // thread safe objects accessed on multiple threads
     private final AudioConnectConfig config;
@@ -109,7 +109,8 @@ public class AudioConnectClient {
         this.playerDataWriter = playerDataWriter;
 
         // execute every 20 ticks (1 second) with max of 20 displaced scheduler tasks
-        playerScheduler = new PlayerScheduler(plugin, playerDataWriter, 20, 20);
+        long tickBudget = (long) (Math.max(config.getTrackingTickBudget(), 0) * TimeUnit.MILLISECONDS.toNanos(1));
+        playerScheduler = new PlayerScheduler(plugin, playerDataWriter, 20, 20, tickBudget);
         messenger = Messenger.builder().registerMessageType(AudioMessage.class).registerMessageType(AudioListMessage.class)
                 .registerMessageType(AudioTrackMessage.class).build();
         logger = plugin.getLogger();
@@ -45,6 +45,14 @@ public final class AudioConnectConfig extends DeadmanConfig {
     private final ConfigEntry<Number> reconnectMaxInterval = entry(Number.class, "reconnect.max-interval");
     private final ConfigEntry<Number> reconnectDelay = entry(Number.class, "reconnect.delay");
     private final ConfigEntry<Number> reconnectMaxAttempts = entry(Number.class, "reconnect.max-attempts");
+    private final ConfigEntry<Boolean> trackingAsync = entry(Boolean.class, "tracking.async");
+    private final ConfigEntry<Number> trackingAsyncThreads = entry(Number.class, "tracking.async-threads");
+    private final ConfigEntry<Boolean> trackingMovementEvents = entry(Boolean.class, "tracking.movement-events");
+    private final ConfigEntry<Number> trackingParkedDistance = entry(Number.class, "tracking.parked-distance");
+    private final ConfigEntry<Number> trackingParkedInterval = entry(Number.class, "tracking.parked-interval");
+    private final ConfigEntry<Number> trackingFastDistance = entry(Number.class, "tracking.fast-distance");
+    private final ConfigEntry<Number> trackingFastInterval = entry(Number.class, "tracking.fast-interval");
+    private final ConfigEntry<Number> trackingTickBudget = entry(Number.class, "tracking.tick-budget");
     private final MapConfigEntry<String, AudioTrackSettings> audioTracks = mapEntry(AudioTrackSettings.class, "audio-tracks");
 
     private volatile PluginFile localeFile;
@@ -184,6 +192,38 @@ public final class AudioConnectConfig extends DeadmanConfig {
         return reconnectMaxAttempts.value().intValue();
     }
 
+    public synchronized boolean isTrackingAsync() {
+        return trackingAsync.value();
+    }
+
+    public synchronized int getTrackingAsyncThreads() {
+        return trackingAsyncThreads.value().intValue();
+    }
+
+    public synchronized boolean isTrackingMovementEvents() {
+        return trackingMovementEvents.value();
+    }
+
+    public synchronized int getTrackingParkedDistance() {
+        return trackingParkedDistance.value().intValue();
+    }
+
+    public synchronized int getTrackingParkedInterval() {
+        return trackingParkedInterval.value().intValue();
+    }
+
+    public synchronized int getTrackingFastDistance() {
+        return trackingFastDistance.value().intValue();
+    }
+
+    public synchronized int getTrackingFastInterval() {
+        return trackingFastInterval.value().intValue();
+    }
+
+    public synchronized double getTrackingTickBudget() {
+        return trackingTickBudget.value().doubleValue();
+    }
+
     public synchronized Map<String, AudioTrackSettings> getAudioTracks() {
         return audioTracks.value();
     }
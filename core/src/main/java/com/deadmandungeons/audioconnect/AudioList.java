@@ -5,6 +5,7 @@ import com.google.common.collect.Sets;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -18,6 +19,7 @@ public class AudioList {
 
     private final ConcurrentHashMap<String, Long> invalidIds = new ConcurrentHashMap<>();
     private final Set<String> audioIds = Sets.newConcurrentHashSet();
+    private final AtomicInteger version = new AtomicInteger();
 
     private final Logger logger;
     private final UpdateHandler updateHandler;
@@ -60,14 +62,25 @@ public class AudioList {
         return audioIds.isEmpty();
     }
 
+    /**
+     * Useful for invalidating anything derived from the contents of this list.
+     * @return a number that changes every time audio IDs are added to or removed from this list
+     */
+    public int getVersion() {
+        return version.get();
+    }
+
     boolean addAll(Set<String> audioIds) {
         boolean updated = this.audioIds.addAll(audioIds);
         invalidIds.keySet().removeAll(audioIds);
+        version.incrementAndGet();
         return updated;
     }
 
     boolean removeAll(Set<String> audioIds) {
-        return this.audioIds.removeAll(audioIds);
+        boolean updated = this.audioIds.removeAll(audioIds);
+        version.incrementAndGet();
+        return updated;
     }
 
     boolean deleteAll(Set<String> audioIds) {
@@ -80,6 +93,7 @@ public class AudioList {
         audioIds.remove(audioId);
         audioIds.add(newAudioId);
         invalidIds.remove(newAudioId);
+        version.incrementAndGet();
         updateHandler.replace(audioId, newAudioId);
     }
 
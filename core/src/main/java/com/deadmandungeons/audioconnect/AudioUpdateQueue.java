@@ -0,0 +1,305 @@
+package com.deadmandungeons.audioconnect;
+
+import com.deadmandungeons.audioconnect.flags.AudioTrack;
+import com.deadmandungeons.audioconnect.region.AudioRegionIndex;
+import com.sk89q.worldguard.protection.managers.RegionManager;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.plugin.IllegalPluginAccessException;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * This class applies the audio ID deletions and replacements received from the AudioConnect server to the
+ * <code>audio</code> flags of the WorldGuard regions that reference them.<br>
+ * Updates are only queued on the thread that receives them. On the main server thread, all queued updates are
+ * coalesced into a single mapping of old to new audio IDs, and the referencing regions are rewritten in one pass
+ * that is spread over as many ticks as needed to stay within {@link #TICK_BUDGET} each tick.<br>
+ * The referencing regions are looked up in the region index of each world if it is up to date. Otherwise, the index may
+ * be missing recent region edits, so every region of the world is scanned asynchronously instead,
+ * and the batch is only completed once the scanned regions have been rewritten as well.
+ * @author Jon
+ */
+final class AudioUpdateQueue implements AudioList.UpdateHandler {
+
+    private static final long TICK_BUDGET = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final AudioConnect plugin;
+    private final Queue<Update> updates = new ConcurrentLinkedQueue<>();
+
+    // The current batch is only accessed on the main server thread
+    private Batch batch;
+    private BukkitTask updateTask;
+
+    AudioUpdateQueue(AudioConnect plugin) {
+        this.plugin = plugin;
+    }
+
+
+    /**
+     * Start the task that applies the queued updates.
+     * This must be called on the main server thread.
+     */
+    void start() {
+        if (updateTask == null) {
+            updateTask = Bukkit.getScheduler().runTaskTimer(plugin, new UpdateTask(), 1, 1);
+        }
+    }
+
+    /**
+     * Stop the update task, and apply all remaining updates without a time budget so that no deletion or replacement is lost.
+     * This must be called on the main server thread.
+     */
+    void shutdown() {
+        if (updateTask != null) {
+            updateTask.cancel();
+            updateTask = null;
+        }
+        // The results of asynchronous scans can no longer be received, so the remaining worlds are scanned right away
+        if (batch != null) {
+            for (Map.Entry<UUID, RegionManager> entry : batch.scans.entrySet()) {
+                batch.regions.addAll(scan(entry.getKey(), entry.getValue(), batch.audioIds.keySet()));
+            }
+            batch.scans.clear();
+        }
+        while (batch != null || !updates.isEmpty()) {
+            if (batch == null) {
+                batch = createBatch(false);
+            }
+            process(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void deleteAll(Set<String> audioIds) {
+        updates.add(new Update(new HashSet<>(audioIds), null));
+    }
+
+    @Override
+    public void replace(String audioId, String newAudioId) {
+        updates.add(new Update(Collections.singleton(audioId), newAudioId));
+    }
+
+
+    private void process(long deadline) {
+        if (batch == null) {
+            if (updates.isEmpty()) {
+                return;
+            }
+            batch = createBatch(true);
+        }
+
+        RegionRef regionRef;
+        while (System.nanoTime() < deadline && (regionRef = batch.regions.poll()) != null) {
+            apply(regionRef);
+        }
+
+        if (batch.regions.isEmpty() && batch.scans.isEmpty()) {
+            for (Map.Entry<UUID, RegionManager> entry : batch.changedManagers.entrySet()) {
+                World world = Bukkit.getWorld(entry.getKey());
+                if (world != null) {
+                    plugin.getRegionIndex().invalidate(world);
+                }
+                plugin.getRegionSaveQueue().save(entry.getValue(), null);
+            }
+            for (String logMessage : batch.logMessages) {
+                plugin.getLogger().info(logMessage);
+            }
+            batch = null;
+        }
+    }
+
+    private Batch createBatch(boolean async) {
+        Batch batch = new Batch();
+        Update update;
+        while ((update = updates.poll()) != null) {
+            for (String audioId : update.audioIds) {
+                // An earlier update in this batch may have replaced an audio ID with the one being updated now
+                for (Map.Entry<String, String> entry : batch.audioIds.entrySet()) {
+                    if (audioId.equals(entry.getValue())) {
+                        entry.setValue(update.newAudioId);
+                    }
+                }
+                if (!batch.audioIds.containsKey(audioId)) {
+                    batch.audioIds.put(audioId, update.newAudioId);
+                }
+
+                if (update.newAudioId == null) {
+                    batch.logMessages.add("Removed audio '" + audioId + "' from all WorldGuard regions.");
+                } else {
+                    batch.logMessages.add("Replaced audio '" + audioId + "' with '" + update.newAudioId + "' in all occurring WorldGuard regions.");
+                }
+            }
+        }
+
+        AudioRegionIndex regionIndex = plugin.getRegionIndex();
+        for (World world : Bukkit.getWorlds()) {
+            UUID worldId = world.getUID();
+            if (regionIndex.isCurrent(world)) {
+                for (String regionId : regionIndex.getIndex(world).getAudioRegionIds(batch.audioIds.keySet())) {
+                    batch.regions.add(new RegionRef(worldId, regionId));
+                }
+                continue;
+            }
+
+            // Regions that are not in the outdated index may reference the updated audio IDs
+            RegionManager regionManager = plugin.getWorldGuardAdapter().getRegionManager(world);
+            if (regionManager == null) {
+                continue;
+            }
+            if (async) {
+                batch.scans.put(worldId, regionManager);
+                Bukkit.getScheduler().runTaskAsynchronously(plugin, new ScanTask(batch, worldId, regionManager));
+            } else {
+                batch.regions.addAll(scan(worldId, regionManager, batch.audioIds.keySet()));
+            }
+        }
+        return batch;
+    }
+
+    private List<RegionRef> scan(UUID worldId, RegionManager regionManager, Set<String> audioIds) {
+        List<RegionRef> regions = new ArrayList<>();
+        for (ProtectedRegion region : regionManager.getRegions().values()) {
+            Set<AudioTrack> audioTracks = region.getFlag(plugin.getAudioFlag());
+            if (audioTracks == null) {
+                continue;
+            }
+            for (AudioTrack audioTrack : audioTracks) {
+                if (audioIds.contains(audioTrack.getAudioId())) {
+                    regions.add(new RegionRef(worldId, region.getId()));
+                    break;
+                }
+            }
+        }
+        return regions;
+    }
+
+    private void apply(RegionRef regionRef) {
+        World world = Bukkit.getWorld(regionRef.worldId);
+        RegionManager regionManager = (world != null ? plugin.getWorldGuardAdapter().getRegionManager(world) : null);
+        ProtectedRegion region = (regionManager != null ? regionManager.getRegion(regionRef.regionId) : null);
+        Set<AudioTrack> audioTracks = (region != null ? region.getFlag(plugin.getAudioFlag()) : null);
+        if (audioTracks == null) {
+            return;
+        }
+
+        boolean changed = false;
+        Set<AudioTrack> newAudioTracks = new HashSet<>(audioTracks.size());
+        for (AudioTrack audioTrack : audioTracks) {
+            if (batch.audioIds.containsKey(audioTrack.getAudioId())) {
+                String newAudioId = batch.audioIds.get(audioTrack.getAudioId());
+                if (newAudioId != null) {
+                    newAudioTracks.add(AudioTrack.of(newAudioId, audioTrack.getTrackId(), audioTrack.getDayTime()));
+                }
+                changed = true;
+            } else {
+                newAudioTracks.add(audioTrack);
+            }
+        }
+        if (changed) {
+            region.setFlag(plugin.getAudioFlag(), (!newAudioTracks.isEmpty() ? newAudioTracks : null));
+            batch.changedManagers.put(regionRef.worldId, regionManager);
+        }
+    }
+
+
+    private class UpdateTask implements Runnable {
+
+        @Override
+        public void run() {
+            process(System.nanoTime() + TICK_BUDGET);
+        }
+
+    }
+
+    private class ScanTask implements Runnable {
+
+        private final Batch batch;
+        private final UUID worldId;
+        private final RegionManager regionManager;
+
+        private ScanTask(Batch batch, UUID worldId, RegionManager regionManager) {
+            this.batch = batch;
+            this.worldId = worldId;
+            this.regionManager = regionManager;
+        }
+
+        @Override
+        public void run() {
+            List<RegionRef> scannedRegions = Collections.emptyList();
+            try {
+                scannedRegions = scan(worldId, regionManager, batch.audioIds.keySet());
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to scan WorldGuard regions for updated audio", e);
+            }
+
+            final List<RegionRef> regions = scannedRegions;
+            try {
+                Bukkit.getScheduler().runTask(plugin, new Runnable() {
+                    @Override
+                    public void run() {
+                        // The world has already been scanned on the main server thread if the queue was shut down
+                        if (batch.scans.remove(worldId) != null) {
+                            batch.regions.addAll(regions);
+                        }
+                    }
+                });
+            } catch (IllegalPluginAccessException e) {
+                // The plugin is being disabled, in which case the world is scanned again by the shutdown
+            }
+        }
+
+    }
+
+    private static class Update {
+
+        private final Set<String> audioIds;
+        private final String newAudioId;
+
+        private Update(Set<String> audioIds, String newAudioId) {
+            this.audioIds = audioIds;
+            this.newAudioId = newAudioId;
+        }
+
+    }
+
+    private static class Batch {
+
+        // Each original audio ID mapped to its final audio ID, or to null if it was deleted
+        private final Map<String, String> audioIds = new LinkedHashMap<>();
+        private final Queue<RegionRef> regions = new ArrayDeque<>();
+        // The worlds whose regions are still being scanned asynchronously
+        private final Map<UUID, RegionManager> scans = new HashMap<>();
+        private final Map<UUID, RegionManager> changedManagers = new HashMap<>();
+        private final List<String> logMessages = new ArrayList<>();
+
+    }
+
+    private static class RegionRef {
+
+        private final UUID worldId;
+        private final String regionId;
+
+        private RegionRef(UUID worldId, String regionId) {
+            this.worldId = worldId;
+            this.regionId = regionId;
+        }
+
+    }
+
+}
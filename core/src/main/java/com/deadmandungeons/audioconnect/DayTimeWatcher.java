@@ -0,0 +1,132 @@
+package com.deadmandungeons.audioconnect;
+
+import com.deadmandungeons.audioconnect.flags.AudioTrack.DayTime;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class watches the time of each loaded world and notifies a {@link DayTimeListener} whenever
+ * the time of a world crosses one of the {@link DayTime} boundaries.<br>
+ * The time of each world is only read once per server tick, and the resulting period snapshot can be obtained
+ * by {@link #getPeriod(World)} from any thread so the time does not need to be checked for every audio track.
+ * The snapshot of a world is taken as soon as it is loaded, so a world is never read outside of the main server thread.
+ * @author Jon
+ */
+public class DayTimeWatcher {
+
+    private final Plugin plugin;
+    private DayTimeListener listener;
+    private final ConcurrentHashMap<UUID, DayTime> periods = new ConcurrentHashMap<>();
+
+    private BukkitTask watchTask;
+
+    public DayTimeWatcher(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+
+    /**
+     * Take the period snapshot of every loaded world, and start the task that checks the time of each world every tick.
+     * This must be called on the main server thread.
+     * @param listener the listener to notify whenever the time of a world enters a new period
+     */
+    public void start(DayTimeListener listener) {
+        if (watchTask == null) {
+            this.listener = listener;
+            for (World world : Bukkit.getWorlds()) {
+                periods.put(world.getUID(), DayTime.getPeriod(world.getTime()));
+            }
+            watchTask = Bukkit.getScheduler().runTaskTimer(plugin, new WatchTask(), 1, 1);
+            Bukkit.getPluginManager().registerEvents(new WorldListener(), plugin);
+        }
+    }
+
+    /**
+     * Stop the watch task and discard all period snapshots.
+     * This must be called on the main server thread.
+     */
+    public void stop() {
+        if (watchTask != null) {
+            watchTask.cancel();
+            watchTask = null;
+        }
+        periods.clear();
+    }
+
+    /**
+     * Get the MORNING, AFTERNOON or NIGHT period of the given world as of the start of the current tick.<br>
+     * This method is thread safe. If there is no snapshot of the world because it is not loaded,
+     * the period of the start of a day is returned, as the time of the world is never read by this method.
+     * @param world the world to get the time period of
+     * @return the period snapshot of the given world as returned by {@link DayTime#getPeriod(long)}
+     */
+    public DayTime getPeriod(World world) {
+        DayTime period = periods.get(world.getUID());
+        return (period != null ? period : DayTime.getPeriod(0));
+    }
+
+
+    private class WatchTask implements Runnable {
+
+        @Override
+        public void run() {
+            for (World world : Bukkit.getWorlds()) {
+                DayTime period = DayTime.getPeriod(world.getTime());
+                DayTime previousPeriod = periods.put(world.getUID(), period);
+                if (previousPeriod != null && previousPeriod != period) {
+                    listener.onPeriodChange(world, period);
+                }
+            }
+
+            // Forget the worlds that have been unloaded
+            if (periods.size() > Bukkit.getWorlds().size()) {
+                Iterator<UUID> iterator = periods.keySet().iterator();
+                while (iterator.hasNext()) {
+                    if (Bukkit.getWorld(iterator.next()) == null) {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+
+    }
+
+    private class WorldListener implements Listener {
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onWorldLoad(WorldLoadEvent event) {
+            World world = event.getWorld();
+            if (watchTask != null) {
+                periods.put(world.getUID(), DayTime.getPeriod(world.getTime()));
+            }
+        }
+
+    }
+
+
+    /**
+     * The interface to be notified by a {@link DayTimeWatcher} when the time of a world enters a new period
+     * @author Jon
+     */
+    public interface DayTimeListener {
+
+        /**
+         * This method will only be called on the main server thread.
+         * @param world the world whose time has crossed a {@link DayTime} boundary
+         * @param period the new MORNING, AFTERNOON or NIGHT period of the world
+         */
+        void onPeriodChange(World world, DayTime period);
+
+    }
+
+}
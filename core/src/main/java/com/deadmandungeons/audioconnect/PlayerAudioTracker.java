@@ -0,0 +1,586 @@
+package com.deadmandungeons.audioconnect;
+
+import com.deadmandungeons.audioconnect.AudioConnectClient.PlayerAudioDataWriter;
+import com.deadmandungeons.audioconnect.DayTimeWatcher.DayTimeListener;
+import com.deadmandungeons.audioconnect.flags.AudioTrack.DayTime;
+import com.deadmandungeons.audioconnect.messages.AudioMessage;
+import com.deadmandungeons.audioconnect.region.AudioRegion;
+import com.deadmandungeons.audioconnect.region.AudioRegionIndex;
+import com.deadmandungeons.audioconnect.region.AudioResolver;
+import com.deadmandungeons.audioconnect.region.AudioState;
+import com.deadmandungeons.audioconnect.region.ResolvedAudio;
+import com.deadmandungeons.audioconnect.region.WorldRegionIndex;
+import com.deadmandungeons.connect.commons.messenger.messages.Message;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.vehicle.VehicleMoveEvent;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * This class tracks the audio regions that each connected player is in, and writes an {@link AudioMessage}
+ * for every track whose audio has changed since the last check.<br>
+ * If async tracking is enabled, the main server thread only captures the positions of the players
+ * along with the region index snapshot of their world, and the audio is resolved and sent from a worker thread pool.<br>
+ * If movement event tracking is enabled, the scheduled polling of {@link #writeData(Player)} is ignored, and instead
+ * only the players that have moved to a different block are checked once on the following tick.<br>
+ * Otherwise, players are classified on each scheduled pass by the distance they moved since the previous pass.
+ * Parked players are only checked every few passes, and fast players are checked by a separate task
+ * that runs more frequently than the scheduled passes. Fast players are also exempt from the region check delay,
+ * as they would otherwise cross several regions before their audio could change.
+ * @author Jon
+ */
+final class PlayerAudioTracker implements PlayerAudioDataWriter, DayTimeListener, Listener {
+
+    // The minimum milliseconds between audio changes of a player, which fast players are exempt from
+    private static final int REGION_CHECK_DELAY = 3000;
+
+    private final AudioConnect plugin;
+    private final AudioConnectConfig config;
+    private final AudioRegionIndex regionIndex;
+    private final AudioResolver audioResolver;
+
+    private final boolean movementEvents;
+    private final int parkedDistance;
+    private final int parkedInterval;
+    private final int fastDistance;
+    private final int fastInterval;
+
+    private final ConcurrentHashMap<UUID, TrackingData> trackingData = new ConcurrentHashMap<>();
+    private final List<Message> messageBuffer = new ArrayList<>();
+    private final List<AudioRegion> regionBuffer = new ArrayList<>();
+
+    // The positions captured during the current scheduled task when tracking asynchronously
+    private final ExecutorService executor;
+    private List<TrackedPosition> positionBuffer = new ArrayList<>();
+    private final PositionCapture capture = new PositionCapture();
+
+    // The players that have moved to a different block since the last movement task when tracking movement events
+    private final Set<UUID> movedPlayers = new LinkedHashSet<>();
+    private BukkitTask movementTask;
+
+    // The connected players classified as fast on the last scheduled pass when polling
+    private final Set<UUID> fastPlayers = new LinkedHashSet<>();
+    private BukkitTask fastTask;
+
+    PlayerAudioTracker(AudioConnect plugin, AudioRegionIndex regionIndex, AudioResolver audioResolver) {
+        this.plugin = plugin;
+        this.regionIndex = regionIndex;
+        this.audioResolver = audioResolver;
+        config = plugin.getConfiguration();
+
+        movementEvents = config.isTrackingMovementEvents();
+        parkedDistance = config.getTrackingParkedDistance();
+        parkedInterval = Math.max(config.getTrackingParkedInterval(), 1);
+        fastDistance = config.getTrackingFastDistance();
+        fastInterval = Math.max(config.getTrackingFastInterval(), 1);
+
+        if (config.isTrackingAsync()) {
+            ThreadFactoryBuilder threadFactory = new ThreadFactoryBuilder().setNameFormat("AudioConnect Tracker #%d").setDaemon(true);
+            executor = Executors.newFixedThreadPool(Math.max(config.getTrackingAsyncThreads(), 1), threadFactory.build());
+        } else {
+            executor = null;
+        }
+    }
+
+
+    /**
+     * Register the event listeners of this tracker, and start the movement task if movement event tracking is enabled.
+     * This must be called on the main server thread.
+     */
+    void start() {
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+        if (movementEvents && movementTask == null) {
+            Bukkit.getPluginManager().registerEvents(new MovementListener(), plugin);
+            movementTask = Bukkit.getScheduler().runTaskTimer(plugin, new MovementTask(), 1, 1);
+        }
+        if (!movementEvents && fastDistance > 0 && fastTask == null) {
+            fastTask = Bukkit.getScheduler().runTaskTimer(plugin, new FastTask(), fastInterval, fastInterval);
+        }
+    }
+
+    /**
+     * Stop the worker threads if async tracking is enabled, and discard all tracking data.
+     * This must be called on the main server thread.
+     */
+    void shutdown() {
+        if (movementTask != null) {
+            movementTask.cancel();
+            movementTask = null;
+        }
+        movedPlayers.clear();
+        if (fastTask != null) {
+            fastTask.cancel();
+            fastTask = null;
+        }
+        fastPlayers.clear();
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        trackingData.clear();
+    }
+
+    @Override
+    public void writeData(Player player) {
+        if (!movementEvents) {
+            TrackingData data = getTrackingData(player);
+            Pace pace = classify(player.getLocation(), data);
+            if (pace == Pace.FAST) {
+                // Fast players are checked by the fast task instead
+                fastPlayers.add(player.getUniqueId());
+                return;
+            }
+            fastPlayers.remove(player.getUniqueId());
+            if (pace == Pace.PARKED && ++data.parkedPasses % parkedInterval != 0) {
+                return;
+            }
+            track(player, false);
+        }
+    }
+
+    @Override
+    public void flushData() {
+        if (!movementEvents) {
+            flush();
+        }
+    }
+
+    @Override
+    public void removeData(UUID playerId) {
+        // A player that is no longer scheduled must not be checked by the fast task either
+        fastPlayers.remove(playerId);
+    }
+
+    /**
+     * Check the audio regions at the given location for the given player and send any changes immediately,
+     * bypassing the region check delay and the scheduled passes. This is used when a player is relocated.
+     */
+    private void refresh(Player player, Location location) {
+        AudioConnectClient client = plugin.getClient();
+        if (client == null || !client.isPlayerConnected(player.getUniqueId())) {
+            return;
+        }
+
+        TrackingData data = getTrackingData(player);
+        // The relocation should not be mistaken for movement by the next scheduled pass
+        data.passWorld = location.getWorld();
+        data.passX = location.getBlockX();
+        data.passY = location.getBlockY();
+        data.passZ = location.getBlockZ();
+
+        List<Message> messages = new ArrayList<>();
+        int writeCount = writeAudioMessages(capture.capture(player, location, data, false), messages, regionBuffer, false);
+        capture.reset();
+        if (writeCount > 0) {
+            data.timestamp = System.currentTimeMillis();
+            client.writeAndFlush(messages.toArray(new Message[messages.size()]));
+        }
+    }
+
+    private Pace classify(Location loc, TrackingData data) {
+        Pace pace = Pace.WALKING;
+        if (loc.getWorld() == data.passWorld) {
+            int x = loc.getBlockX(), y = loc.getBlockY(), z = loc.getBlockZ();
+            int distance = Math.max(Math.abs(x - data.passX), Math.max(Math.abs(y - data.passY), Math.abs(z - data.passZ)));
+            if (distance < parkedDistance) {
+                pace = Pace.PARKED;
+            } else if (fastDistance > 0 && distance >= fastDistance) {
+                pace = Pace.FAST;
+            }
+        }
+        if (pace != Pace.PARKED) {
+            data.parkedPasses = 0;
+        }
+        data.passWorld = loc.getWorld();
+        data.passX = loc.getBlockX();
+        data.passY = loc.getBlockY();
+        data.passZ = loc.getBlockZ();
+        return pace;
+    }
+
+    private void track(Player player, boolean fast) {
+        TrackedPosition position = capture.capture(player, player.getLocation(), getTrackingData(player), fast);
+        if (executor != null) {
+            positionBuffer.add(position);
+        } else {
+            check(position, messageBuffer, regionBuffer);
+        }
+    }
+
+    private void flush() {
+        capture.reset();
+        if (executor != null) {
+            if (positionBuffer.size() > 0) {
+                executor.execute(new CheckTask(positionBuffer));
+                positionBuffer = new ArrayList<>();
+            }
+        } else if (messageBuffer.size() > 0) {
+            plugin.getClient().writeAndFlush(messageBuffer.toArray(new Message[messageBuffer.size()]));
+            messageBuffer.clear();
+        }
+    }
+
+    @Override
+    public void onPeriodChange(World world, DayTime period) {
+        // Only the players in regions with time constrained audio need to be resolved again
+        List<Message> messages = new ArrayList<>();
+        AudioConnectClient client = plugin.getClient();
+        for (Player player : world.getPlayers()) {
+            if (!client.isPlayerConnected(player.getUniqueId())) {
+                continue;
+            }
+            TrackingData data = trackingData.get(player.getUniqueId());
+            if (data != null && data.timeSensitive) {
+                writeAudioMessages(capture.capture(player, data), messages, regionBuffer, false);
+            }
+        }
+        capture.reset();
+        if (messages.size() > 0) {
+            client.writeAndFlush(messages.toArray(new Message[messages.size()]));
+        }
+    }
+
+    @Override
+    public void writeAudioMessages(Player player, List<Message> messageBuffer) {
+        writeAudioMessages(capture.capture(player, getTrackingData(player)), messageBuffer, regionBuffer, true);
+        capture.reset();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        refresh(event.getPlayer(), event.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        refresh(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        refresh(event.getPlayer(), event.getRespawnLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        trackingData.remove(event.getPlayer().getUniqueId());
+        fastPlayers.remove(event.getPlayer().getUniqueId());
+    }
+
+
+    private void check(TrackedPosition position, List<Message> messageBuffer, List<AudioRegion> regionBuffer) {
+        TrackingData data = position.trackingData;
+        synchronized (data) {
+            // Positions captured earlier may be checked later when tracking asynchronously
+            if (position.captureTime < data.captureTime) {
+                return;
+            }
+            if (!position.fast && data.timestamp + REGION_CHECK_DELAY > position.captureTime) {
+                return;
+            }
+            // Nothing can be heard in a world without any audio, so only the audio of a previous world would need to be stopped
+            if (!position.index.hasAudio() && data.audio.isEmpty()) {
+                return;
+            }
+            // No audio region boundary could have been crossed since the last check if the index has not changed,
+            // but a player that has not moved at all must still be checked against a rebuilt index
+            int distance = Math.max(Math.abs(position.x - data.x), Math.max(Math.abs(position.y - data.y), Math.abs(position.z - data.z)));
+            if (data.index == position.index && (distance == 0 || distance < data.safeDistance)) {
+                return;
+            }
+
+            if (writeAudioMessages(position, messageBuffer, regionBuffer, false) > 0) {
+                data.timestamp = position.captureTime;
+            }
+        }
+    }
+
+    private int writeAudioMessages(TrackedPosition position, List<Message> messageBuffer, List<AudioRegion> regionBuffer, boolean ignoreEquals) {
+        TrackingData data = position.trackingData;
+        synchronized (data) {
+            WorldRegionIndex index = position.index;
+            int x = position.x, y = position.y, z = position.z;
+
+            // Only the audio regions are indexed, so this scales with the amount of audio regions rather than all regions
+            List<AudioRegion> regions = regionBuffer;
+            regions.clear();
+            if (index.hasAudio()) {
+                index.getApplicableRegions(x, y, z, regions);
+            }
+
+            data.captureTime = position.captureTime;
+            data.index = index;
+            data.x = x;
+            data.y = y;
+            data.z = z;
+            data.safeDistance = index.getSafeDistance(x, y, z);
+            data.timeSensitive = audioResolver.isTimeSensitive(index, regions);
+
+            ResolvedAudio audio = audioResolver.resolve(index, regions, position.world);
+            ResolvedAudio previousAudio = data.audio;
+            data.audio = audio;
+
+            // The same instance is shared for the same regions, so nothing could have changed
+            if ((audio == previousAudio && !ignoreEquals) || (audio.isEmpty() && previousAudio.isEmpty())) {
+                return 0;
+            }
+
+            int writeCount = 0;
+            for (String trackId : Sets.union(audio.getTrackIds(), previousAudio.getTrackIds())) {
+                if (trackId != null && !config.getAudioTracks().containsKey(trackId)) {
+                    continue;
+                }
+                // Audio states are interned, so equal states are always the same instance
+                AudioState audioState = audio.getAudioState(trackId);
+                if (!ignoreEquals && audioState == previousAudio.getAudioState(trackId)) {
+                    continue;
+                }
+
+                AudioMessage.Builder messageBuilder = AudioMessage.builder(position.playerId);
+                if (trackId != null) {
+                    messageBuilder.track(trackId);
+                }
+                if (audioState != null) {
+                    for (String audioId : audioState.getAudioIds()) {
+                        messageBuilder.audio(audioId);
+                    }
+                    if (audioState.getAudioDelay() != null) {
+                        messageBuilder.delayRange(audioState.getAudioDelay());
+                    }
+                }
+                messageBuffer.add(messageBuilder.build());
+                writeCount++;
+            }
+
+            return writeCount;
+        }
+    }
+
+    private TrackingData getTrackingData(Player player) {
+        TrackingData data = trackingData.get(player.getUniqueId());
+        if (data == null) {
+            data = new TrackingData();
+            trackingData.put(player.getUniqueId(), data);
+        }
+        return data;
+    }
+
+
+    /**
+     * Captures player positions on the main server thread.
+     * The region index of the last world is reused since most players of a scheduled task are usually in the same world.
+     */
+    private class PositionCapture {
+
+        private World world;
+        private WorldRegionIndex index;
+
+        private TrackedPosition capture(Player player, TrackingData data) {
+            return capture(player, player.getLocation(), data, false);
+        }
+
+        private TrackedPosition capture(Player player, Location loc, TrackingData data, boolean fast) {
+            if (loc.getWorld() != world) {
+                world = loc.getWorld();
+                index = regionIndex.getIndex(world);
+            }
+            return new TrackedPosition(player.getUniqueId(), data, world, index, loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(), fast);
+        }
+
+        private void reset() {
+            world = null;
+            index = null;
+        }
+
+    }
+
+    private class CheckTask implements Runnable {
+
+        private final List<TrackedPosition> positions;
+
+        private CheckTask(List<TrackedPosition> positions) {
+            this.positions = positions;
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<Message> messages = new ArrayList<>();
+                List<AudioRegion> regions = new ArrayList<>();
+                for (TrackedPosition position : positions) {
+                    check(position, messages, regions);
+                }
+                if (messages.size() > 0) {
+                    plugin.getClient().writeAndFlush(messages.toArray(new Message[messages.size()]));
+                }
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to check the audio regions of players", e);
+            }
+        }
+
+    }
+
+    private class MovementListener implements Listener {
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onPlayerMove(PlayerMoveEvent event) {
+            if (isDifferentBlock(event.getFrom(), event.getTo())) {
+                onMove(event.getPlayer());
+            }
+        }
+
+        // Players riding a vehicle do not fire a PlayerMoveEvent
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onVehicleMove(VehicleMoveEvent event) {
+            Entity passenger = event.getVehicle().getPassenger();
+            if (passenger instanceof Player && isDifferentBlock(event.getFrom(), event.getTo())) {
+                onMove((Player) passenger);
+            }
+        }
+
+        private void onMove(Player player) {
+            if (plugin.getClient().isPlayerConnected(player.getUniqueId())) {
+                // Multiple moves of a player within the same tick are coalesced into a single check
+                movedPlayers.add(player.getUniqueId());
+            }
+        }
+
+        private boolean isDifferentBlock(Location a, Location b) {
+            return (a.getBlockX() != b.getBlockX()) || (a.getBlockY() != b.getBlockY()) || (a.getBlockZ() != b.getBlockZ()) ||
+                    a.getWorld() != b.getWorld();
+        }
+
+    }
+
+    private class MovementTask implements Runnable {
+
+        @Override
+        public void run() {
+            if (movedPlayers.isEmpty()) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            Iterator<UUID> iterator = movedPlayers.iterator();
+            while (iterator.hasNext()) {
+                Player player = Bukkit.getPlayer(iterator.next());
+                if (player == null) {
+                    iterator.remove();
+                    continue;
+                }
+                // Players that cannot be checked yet are retained so that their last move is not missed
+                TrackingData data = getTrackingData(player);
+                if (data.timestamp + REGION_CHECK_DELAY <= now) {
+                    iterator.remove();
+                    track(player, false);
+                }
+            }
+            flush();
+        }
+
+    }
+
+    private class FastTask implements Runnable {
+
+        @Override
+        public void run() {
+            if (fastPlayers.isEmpty()) {
+                return;
+            }
+
+            AudioConnectClient client = plugin.getClient();
+            Iterator<UUID> iterator = fastPlayers.iterator();
+            while (iterator.hasNext()) {
+                UUID playerId = iterator.next();
+                Player player = Bukkit.getPlayer(playerId);
+                if (player != null && client != null && client.isPlayerConnected(playerId)) {
+                    track(player, true);
+                } else {
+                    iterator.remove();
+                }
+            }
+            flush();
+        }
+
+    }
+
+    private enum Pace {
+        PARKED,
+        WALKING,
+        FAST
+    }
+
+    private static class TrackedPosition {
+
+        private final UUID playerId;
+        private final TrackingData trackingData;
+        private final World world;
+        private final WorldRegionIndex index;
+        private final int x, y, z;
+        // Whether the position was captured by the fast task
+        private final boolean fast;
+        private final long captureTime = System.currentTimeMillis();
+
+        private TrackedPosition(UUID playerId, TrackingData trackingData, World world, WorldRegionIndex index, int x, int y, int z, boolean fast) {
+            this.playerId = playerId;
+            this.trackingData = trackingData;
+            this.world = world;
+            this.index = index;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.fast = fast;
+        }
+
+    }
+
+    private static class TrackingData {
+
+        private volatile long timestamp;
+        private long captureTime;
+        // The index snapshot and block position of the last region check
+        private WorldRegionIndex index;
+        private int x, y, z;
+        // The distance that can be moved from the last checked block without crossing an audio region boundary
+        private int safeDistance;
+        // Whether the audio of the last checked regions depends on the time of day
+        private boolean timeSensitive;
+        private ResolvedAudio audio = ResolvedAudio.NONE;
+
+        // The position of the last scheduled pass which is only accessed on the main thread
+        private World passWorld;
+        private int passX, passY, passZ;
+        private int parkedPasses;
+
+    }
+
+}
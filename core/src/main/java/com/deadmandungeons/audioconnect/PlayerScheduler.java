@@ -0,0 +1,602 @@
+package com.deadmandungeons.audioconnect;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.IllegalPluginAccessException;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * This class facilitates the scheduled execution of a repeated data processing task
+ * for a set of players in an efficient manner through load balancing.<br>
+ * Players added to this scheduler are partitioned into separate tasks which are executed
+ * at different times (or ticks) displaced from each other as a means to balance the load.
+ * The amount of partitioned tasks will never exceed the defined <code>tickFrequency</code>
+ * or the optionally defined <code>maximumTasks</code>. All partitioned tasks are executed by a single driver task
+ * that runs every tick, so the tasks stay evenly phased across the frequency period regardless of load fluctuations.
+ * The driver task is only scheduled whenever there are players added, and will stop and idle when there are none.<br>
+ * The time taken to process each player is measured, and new players are added to the task with the lowest total cost
+ * rather than the fewest players, as some players are much more expensive to process than others.
+ * If a <code>tickBudget</code> is defined, the driver task stops processing once the budget has been spent in a tick,
+ * leaving room for the flush of the processed data,
+ * and carries the remaining players over to the following ticks so that a load spike never causes a tick spike.<br>
+ * As players leave, the tasks may become unbalanced, so a few players are migrated from the most expensive
+ * task to the cheapest task each tick until their costs converge. A migrated player is only processed by the pass
+ * of its new task that is nearest to when it was due in its previous task, so its cadence is kept within half a period.<br>
+ * There are 3 simple methods to handle scheduling:<br>
+ * <ul>
+ * <li>{@link #addPlayer(UUID)}</li>
+ * <li>{@link #removePlayer(UUID)}</li>
+ * <li>{@link #clear()}</li>
+ * </ul>
+ * These operations are thread safe without locking, and take constant or logarithmic time in the amount of
+ * players and tasks, as the task of each player and the order of tasks by cost are indexed.<br>
+ * Note that the partition state is only ever accessed by the main server thread. The operations are applied
+ * immediately when called on the main server thread, and otherwise queued to be applied on the main server thread
+ * by the next driver execution, so a server tick never waits on another thread.<br>
+ * Each task holds the Player instances of its players in an array, and players are removed as soon as they quit,
+ * so a task execution does not need to look up any player by UUID.
+ * @author Jon
+ */
+public class PlayerScheduler {
+
+    // The weight of the previous cost of a player in its moving average is 1 - 1/2^COST_SMOOTHING
+    private static final int COST_SMOOTHING = 3;
+    // The maximum amount of players to migrate between tasks in a single tick
+    private static final int MAX_MIGRATIONS = 2;
+    // The difference in cost between the most and least expensive tasks that is tolerated, as a fraction of the average task cost.
+    // This prevents players from being migrated back and forth due to measurement noise.
+    private static final double REBALANCE_TOLERANCE = 0.5;
+
+    private final Plugin plugin;
+    private final PlayerDataWriter writer;
+    private final int tickFrequency;
+    private final long tickBudget;
+    private final PlayerTask[] playerTasks;
+    // The task that is due at each tick of the frequency period, or null if there is none
+    private final PlayerTask[] phaseTasks;
+    // The tasks ordered by their total cost, so the cheapest task is always first
+    private final TreeSet<PlayerTask> tasksByCost = new TreeSet<>(new Comparator<PlayerTask>() {
+        @Override
+        public int compare(PlayerTask task1, PlayerTask task2) {
+            int result = Long.compare(task1.cost, task2.cost);
+            if (result == 0) {
+                result = Integer.compare(task1.size, task2.size);
+            }
+            return (result != 0 ? result : Integer.compare(task1.index, task2.index));
+        }
+    });
+    private final Map<UUID, Member> members = new HashMap<>();
+    // The sum of the costs of all tasks
+    private long totalCost;
+    // The moving average of the nanoseconds taken to flush the data of a task, which is reserved from the tick budget
+    private long flushCost;
+
+    // The due tasks that have not been fully processed yet, in the order they became due
+    private final Queue<PlayerTask> pendingTasks = new ArrayDeque<>();
+    private BukkitTask driverTask;
+    private long tick;
+
+    // The operations submitted from other threads to be applied on the main thread
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drainScheduled.set(false);
+            drainCommands();
+        }
+    };
+
+
+    /**
+     * Construct a new PlayerScheduler
+     * <b>Note:</b> maximumTasks will be set as the given tickFrequency, so this is equivalent to:
+     * {@link #PlayerScheduler(Plugin, PlayerDataWriter, int, int) PlayerScheduler(plugin, writer, tickFrequency, tickFrequency)}
+     * @param plugin the plugin in which tasks will be scheduled for
+     * @param writer the player data writer that will be notified for each player during each scheduled execution
+     * @param tickFrequency the frequency in server ticks that the given data writer will be notified for each player
+     * @throws IllegalArgumentException if tickFrequency or maximumTasks is less than 1
+     */
+    public PlayerScheduler(Plugin plugin, PlayerDataWriter writer, int tickFrequency) throws IllegalArgumentException {
+        this(plugin, writer, tickFrequency, tickFrequency);
+    }
+
+    /**
+     * Construct a new PlayerScheduler without a tick budget
+     * @param plugin the plugin in which tasks will be scheduled for
+     * @param writer the player data writer that will be notified for each player during each scheduled execution
+     * @param tickFrequency the frequency in server ticks that the given data writer will be notified for each player
+     * @param maximumTasks the maximum amount of displaced scheduled tasks for load balancing which will not exceed tickFrequency
+     * @throws IllegalArgumentException if tickFrequency or maximumTasks is less than 1
+     */
+    public PlayerScheduler(Plugin plugin, PlayerDataWriter writer, int tickFrequency, int maximumTasks) throws IllegalArgumentException {
+        this(plugin, writer, tickFrequency, maximumTasks, 0);
+    }
+
+    /**
+     * Construct a new PlayerScheduler
+     * @param plugin the plugin in which tasks will be scheduled for
+     * @param writer the player data writer that will be notified for each player during each scheduled execution
+     * @param tickFrequency the frequency in server ticks that the given data writer will be notified for each player
+     * @param maximumTasks the maximum amount of displaced scheduled tasks for load balancing which will not exceed tickFrequency
+     * @param tickBudget the maximum amount of nanoseconds to spend processing players and flushing their data in a single tick,
+     * or 0 for no limit.
+     * At least one player is always processed in a tick that has due players.
+     * @throws IllegalArgumentException if tickFrequency or maximumTasks is less than 1, or if tickBudget is negative
+     */
+    public PlayerScheduler(Plugin plugin, PlayerDataWriter writer, int tickFrequency, int maximumTasks, long tickBudget)
+            throws IllegalArgumentException {
+        if (tickFrequency <= 0 || maximumTasks <= 0) {
+            throw new IllegalArgumentException("tickFrequency and maximumTasks cannot be less than 1");
+        }
+        if (tickBudget < 0) {
+            throw new IllegalArgumentException("tickBudget cannot be negative");
+        }
+        if (maximumTasks > tickFrequency) {
+            maximumTasks = tickFrequency;
+        }
+
+        this.plugin = plugin;
+        this.writer = writer;
+        this.tickFrequency = tickFrequency;
+        this.tickBudget = tickBudget;
+        playerTasks = new PlayerTask[maximumTasks];
+        phaseTasks = new PlayerTask[tickFrequency];
+
+        // Spread the tasks evenly over the frequency period
+        for (int i = 0; i < maximumTasks; i++) {
+            int phase = (int) ((long) i * tickFrequency / maximumTasks);
+            playerTasks[i] = new PlayerTask(i, phase);
+            phaseTasks[phase] = playerTasks[i];
+        }
+        tasksByCost.addAll(Arrays.asList(playerTasks));
+
+        Bukkit.getPluginManager().registerEvents(new QuitListener(), plugin);
+    }
+
+
+    /**
+     * Add a player to this scheduler to begin scheduled execution of
+     * {@link PlayerDataWriter#writeData(Player)} for the player.<br>
+     * If a player identified by the given ID is not online during scheduled execution,
+     * the playerId will be removed from this scheduler.
+     * @param playerId the UUID of the player to add to this scheduler
+     * @return <code>true</code> if this scheduler did not already contain the given playerId,
+     * or if this was not called on the main server thread and the addition was queued
+     */
+    public boolean addPlayer(final UUID playerId) {
+        if (!Bukkit.isPrimaryThread()) {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    addPlayerNow(playerId);
+                }
+            });
+            return true;
+        }
+        drainCommands();
+        return addPlayerNow(playerId);
+    }
+
+    /**
+     * Remove a player from this scheduler to stop scheduled executions of
+     * {@link PlayerDataWriter#writeData(Player)} for the player.
+     * @param playerId the UUID of the player to remove from this scheduler
+     * @return <code>true</code> if this scheduler contained the given playerId,
+     * or if this was not called on the main server thread and the removal was queued
+     */
+    public boolean removePlayer(final UUID playerId) {
+        if (!Bukkit.isPrimaryThread()) {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    removePlayerNow(playerId);
+                }
+            });
+            return true;
+        }
+        drainCommands();
+        return removePlayerNow(playerId);
+    }
+
+    /**
+     * Remove all players from this scheduler and cancel all scheduled tasks
+     */
+    public void clear() {
+        if (!Bukkit.isPrimaryThread()) {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    clearNow();
+                }
+            });
+            return;
+        }
+        drainCommands();
+        clearNow();
+    }
+
+
+    private void submit(Runnable command) {
+        commands.add(command);
+        // The driver task may be idle, so make sure the command is applied by the next tick regardless
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                Bukkit.getScheduler().runTask(plugin, drainTask);
+            } catch (IllegalPluginAccessException e) {
+                // The plugin is being disabled, so there is nothing left to apply the command to
+                drainScheduled.set(false);
+            }
+        }
+    }
+
+    private void drainCommands() {
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            command.run();
+        }
+    }
+
+    private boolean addPlayerNow(UUID playerId) {
+        if (members.containsKey(playerId)) {
+            return false;
+        }
+        // The player may not have finished joining yet, in which case it is resolved by the first task execution
+        Member member = new Member(playerId, Bukkit.getPlayer(playerId));
+        member.due = tick;
+        // Assume the new player costs as much as the average player until it has been measured
+        if (!members.isEmpty()) {
+            member.cost = totalCost / members.size();
+        }
+
+        // The task must be removed from the ordered set while its cost changes
+        PlayerTask cheapestTask = tasksByCost.pollFirst();
+        cheapestTask.addMember(member);
+        tasksByCost.add(cheapestTask);
+        members.put(playerId, member);
+
+        if (driverTask == null) {
+            driverTask = Bukkit.getScheduler().runTaskTimer(plugin, new DriverTask(), 1, 1);
+        }
+        return true;
+    }
+
+    private boolean removePlayerNow(UUID playerId) {
+        Member member = members.remove(playerId);
+        if (member == null) {
+            return false;
+        }
+        PlayerTask playerTask = member.task;
+        tasksByCost.remove(playerTask);
+        playerTask.removeMember(member);
+        tasksByCost.add(playerTask);
+
+        if (members.isEmpty()) {
+            stop();
+        }
+        writer.removeData(playerId);
+        return true;
+    }
+
+    private void clearNow() {
+        tasksByCost.clear();
+        for (PlayerTask playerTask : playerTasks) {
+            Arrays.fill(playerTask.members, 0, playerTask.size, null);
+            playerTask.size = 0;
+            playerTask.cost = 0;
+        }
+        tasksByCost.addAll(Arrays.asList(playerTasks));
+        totalCost = 0;
+        List<UUID> playerIds = new ArrayList<>(members.keySet());
+        members.clear();
+        stop();
+        for (UUID playerId : playerIds) {
+            writer.removeData(playerId);
+        }
+    }
+
+    private void stop() {
+        if (driverTask != null) {
+            driverTask.cancel();
+            driverTask = null;
+        }
+        for (PlayerTask playerTask : pendingTasks) {
+            playerTask.cursor = -1;
+        }
+        pendingTasks.clear();
+    }
+
+
+    private class DriverTask implements Runnable {
+
+        @Override
+        public void run() {
+            drainCommands();
+
+            long currentTick = tick++;
+            PlayerTask dueTask = phaseTasks[(int) (currentTick % tickFrequency)];
+            // A task that is still pending from its previous period is already behind, so it is not queued twice
+            if (dueTask != null && dueTask.size > 0 && dueTask.cursor < 0) {
+                dueTask.cursor = dueTask.size - 1;
+                dueTask.passTick = currentTick;
+                pendingTasks.add(dueTask);
+            }
+
+            long startTime = System.nanoTime();
+            boolean processed = false;
+            PlayerTask playerTask;
+            while ((playerTask = pendingTasks.peek()) != null) {
+                if (!playerTask.process(startTime, processed)) {
+                    // The budget has been spent, so continue with this task on the next tick
+                    flush();
+                    return;
+                }
+                pendingTasks.poll();
+                processed = true;
+                flush();
+            }
+
+            // Only rebalance with the time left over, as it is never urgent
+            for (int i = 0; i < MAX_MIGRATIONS; i++) {
+                if (!migrateMember()) {
+                    break;
+                }
+            }
+        }
+
+        private void flush() {
+            long startTime = System.nanoTime();
+            try {
+                writer.flushData();
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to flush player data", e);
+            }
+            flushCost += (System.nanoTime() - startTime - flushCost) >> COST_SMOOTHING;
+        }
+
+        /**
+         * Migrate a single member from the most expensive task to the least expensive task if it reduces
+         * the difference between them, or if their costs are equal and their sizes are not
+         * @return <code>true</code> if a member was migrated
+         */
+        private boolean migrateMember() {
+            PlayerTask heaviestTask = tasksByCost.last();
+            PlayerTask lightestTask = tasksByCost.first();
+            // Members cannot be moved in or out of a task while it is part way through its pass
+            if (heaviestTask == lightestTask || heaviestTask.cursor >= 0 || lightestTask.cursor >= 0) {
+                return false;
+            }
+
+            Member member = null;
+            long difference = heaviestTask.cost - lightestTask.cost;
+            if (difference == 0) {
+                if (heaviestTask.size - lightestTask.size > 1) {
+                    member = heaviestTask.members[heaviestTask.size - 1];
+                }
+            } else {
+                if (difference <= totalCost / playerTasks.length * REBALANCE_TOLERANCE) {
+                    return false;
+                }
+
+                // Find the member that brings both tasks closest to equal cost, which must be cheaper than the difference
+                long bestResult = difference;
+                for (int i = 0; i < heaviestTask.size; i++) {
+                    Member candidate = heaviestTask.members[i];
+                    long result = Math.abs(difference - 2 * candidate.cost);
+                    if (result < bestResult) {
+                        bestResult = result;
+                        member = candidate;
+                    }
+                }
+            }
+            if (member == null) {
+                return false;
+            }
+
+            tasksByCost.remove(heaviestTask);
+            tasksByCost.remove(lightestTask);
+            heaviestTask.removeMember(member);
+            lightestTask.addMember(member);
+            tasksByCost.add(heaviestTask);
+            tasksByCost.add(lightestTask);
+            return true;
+        }
+
+    }
+
+    private class PlayerTask {
+
+        private final int index;
+        private final int phase;
+        private Member[] members = new Member[8];
+        private int size;
+        // The sum of the costs of the members
+        private long cost;
+        // The position of the next member to process, or -1 if this task is not pending
+        private int cursor = -1;
+        // The tick at which the current or last pass of this task was due
+        private long passTick;
+
+        private PlayerTask(int index, int phase) {
+            this.index = index;
+            this.phase = phase;
+        }
+
+        /**
+         * Process the remaining members of this task from the cursor
+         * @param startTime the {@link System#nanoTime()} at which the current tick started processing
+         * @param processed whether any player has been processed in the current tick yet
+         * @return <code>true</code> if all members have been processed, or <code>false</code> if the tick budget was spent
+         */
+        private boolean process(long startTime, boolean processed) {
+            long costDelta = 0;
+            try {
+                // Members are processed from the end, so the members at or below the cursor are the ones not processed yet
+                while (cursor >= 0) {
+                    long memberStartTime = System.nanoTime();
+                    // The flush that follows the last processed member must fit in the budget as well
+                    if (processed && tickBudget > 0 && memberStartTime - startTime + flushCost >= tickBudget) {
+                        return false;
+                    }
+
+                    Member member = members[cursor--];
+                    // A member migrated from another task waits for the pass nearest to when it is due
+                    if (member.due - passTick > tickFrequency / 2) {
+                        continue;
+                    }
+                    if (member.player == null && (member.player = Bukkit.getPlayer(member.playerId)) == null) {
+                        // The cost of this task must be settled before it can be reordered for the removal
+                        settleCost(costDelta);
+                        costDelta = 0;
+                        removePlayerNow(member.playerId);
+                        continue;
+                    }
+                    // A failure for one player must not hold up the rest of the players
+                    try {
+                        writer.writeData(member.player);
+                    } catch (Exception e) {
+                        plugin.getLogger().log(Level.WARNING, "Failed to write data for player " + member.player.getName(), e);
+                    }
+                    processed = true;
+                    // The player may have been removed while its data was written, such as when it was kicked
+                    if (member.task != this) {
+                        continue;
+                    }
+                    member.due = passTick + tickFrequency;
+
+                    long memberCost = System.nanoTime() - memberStartTime;
+                    long newCost = member.cost + ((memberCost - member.cost) >> COST_SMOOTHING);
+                    costDelta += newCost - member.cost;
+                    member.cost = newCost;
+                }
+                return true;
+            } finally {
+                settleCost(costDelta);
+            }
+        }
+
+        private void settleCost(long costDelta) {
+            if (costDelta != 0) {
+                tasksByCost.remove(this);
+                cost += costDelta;
+                totalCost += costDelta;
+                tasksByCost.add(this);
+            }
+        }
+
+        private void addMember(Member member) {
+            if (size == members.length) {
+                members = Arrays.copyOf(members, size * 2);
+            }
+            member.task = this;
+            member.position = size;
+            members[size++] = member;
+            cost += member.cost;
+            totalCost += member.cost;
+        }
+
+        private void removeMember(Member member) {
+            int position = member.position;
+            // If the pass in progress has not processed the member yet, its position is filled by the member at the cursor instead,
+            // so that the members that have not been processed stay at or below the cursor
+            if (position <= cursor) {
+                setMember(members[cursor], position);
+                position = cursor--;
+            }
+            // Move the last member into the vacated position
+            int last = --size;
+            if (position != last) {
+                setMember(members[last], position);
+            }
+            members[last] = null;
+            member.task = null;
+            cost -= member.cost;
+            totalCost -= member.cost;
+        }
+
+        private void setMember(Member member, int position) {
+            members[position] = member;
+            member.position = position;
+        }
+
+    }
+
+
+    private static class Member {
+
+        private final UUID playerId;
+        private Player player;
+        private PlayerTask task;
+        private int position;
+        // The moving average of the nanoseconds taken to process this player
+        private long cost;
+        // The tick at which this player is next due to be processed
+        private long due;
+
+        private Member(UUID playerId, Player player) {
+            this.playerId = playerId;
+            this.player = player;
+        }
+
+    }
+
+    private class QuitListener implements Listener {
+
+        // Evict quitting players right away so that no task ever holds on to an offline Player
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPlayerQuit(PlayerQuitEvent event) {
+            drainCommands();
+            removePlayerNow(event.getPlayer().getUniqueId());
+        }
+
+    }
+
+
+    /**
+     * The interface defining basic player data processing methods to be executed by a {@link PlayerScheduler}
+     * @author Jon
+     */
+    public interface PlayerDataWriter {
+
+        /**
+         * Called for a single player in a {@link PlayerScheduler} partitioned task
+         * @param player the player to write and/or process data for
+         */
+        void writeData(Player player);
+
+        /**
+         * Called after all players in a {@link PlayerScheduler} partitioned task
+         * have been processed by {@link #writeData(Player)}, or after the players processed
+         * so far if the tick budget was spent before the task was completed
+         */
+        void flushData();
+
+        /**
+         * Called on the main server thread when a player is removed from a {@link PlayerScheduler},
+         * so that any data kept for the player between executions can be discarded
+         * @param playerId the UUID of the player that was removed
+         */
+        void removeData(UUID playerId);
+
+    }
+
+}
@@ -14,7 +14,6 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.io.BaseEncoding;
 import com.google.common.net.HttpHeaders;
 import com.sk89q.worldguard.protection.managers.RegionManager;
-import com.sk89q.worldguard.protection.managers.storage.StorageException;
 import com.sk89q.worldguard.protection.regions.ProtectedRegion;
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.Bukkit;
@@ -399,7 +398,7 @@ public class ImportCommand implements Command {
                 // Region IDs are unique for each RegionAudio import, so no need to synchronize
                 ProtectedRegion region = regionManager.getRegion(regionId);
                 if (region != null) {
-                    AudioTrack audioTrack = new AudioTrack(audioId);
+                    AudioTrack audioTrack = AudioTrack.of(audioId, null, null);
                     Set<AudioTrack> audioTracks = region.getFlag(plugin.getAudioFlag());
                     audioTracks = (audioTracks != null ? new HashSet<>(audioTracks) : new HashSet<AudioTrack>());
                     if (audioTracks.add(audioTrack)) {
@@ -413,13 +412,9 @@ public class ImportCommand implements Command {
 
         @Override
         protected void saveRegionChanges() {
+            plugin.getRegionIndex().invalidateAll();
             for (RegionManager regionManager : regionManagers) {
-                try {
-                    regionManager.saveChanges();
-                } catch (StorageException e) {
-                    String msg = "Failed to save '" + regionManager + "' WorldGuard region changes from MCJukebox import";
-                    plugin.getLogger().log(Level.WARNING, msg, e);
-                }
+                plugin.getRegionSaveQueue().save(regionManager, null);
             }
         }
 
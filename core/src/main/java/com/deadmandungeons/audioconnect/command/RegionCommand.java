@@ -3,6 +3,7 @@ package com.deadmandungeons.audioconnect.command;
 import com.deadmandungeons.audioconnect.AudioConnect;
 import com.deadmandungeons.audioconnect.flags.AudioDelay;
 import com.deadmandungeons.audioconnect.flags.AudioTrack;
+import com.deadmandungeons.audioconnect.region.RegionSaveQueue.SaveCallback;
 import com.deadmandungeons.deadmanplugin.command.ArgumentInfo;
 import com.deadmandungeons.deadmanplugin.command.ArgumentInfo.ArgType;
 import com.deadmandungeons.deadmanplugin.command.Arguments;
@@ -11,7 +12,6 @@ import com.deadmandungeons.deadmanplugin.command.CommandInfo;
 import com.deadmandungeons.deadmanplugin.command.SubCommandInfo;
 import com.sk89q.worldguard.protection.flags.SetFlag;
 import com.sk89q.worldguard.protection.managers.RegionManager;
-import com.sk89q.worldguard.protection.managers.storage.StorageException;
 import com.sk89q.worldguard.protection.regions.ProtectedRegion;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
@@ -19,7 +19,6 @@ import org.bukkit.entity.Player;
 
 import java.util.HashSet;
 import java.util.Set;
-import java.util.logging.Level;
 
 //@formatter:off
 @CommandInfo(
@@ -96,18 +95,26 @@ public class RegionCommand implements Command {
         if (command == 0) {
             return printAudioInfo(sender, regionManager, regionId);
         } else {
+            boolean edited = false;
             switch (command) {
                 case 1:
-                    return addAudio(sender, (AudioTrack) args.getArgs()[3], regionManager, regionId);
+                    edited = addAudio(sender, (AudioTrack) args.getArgs()[3], regionManager, regionId);
+                    break;
                 case 2:
-                    return removeAudio(sender, (AudioTrack) args.getArgs()[3], regionManager, regionId);
+                    edited = removeAudio(sender, (AudioTrack) args.getArgs()[3], regionManager, regionId);
+                    break;
                 case 3:
-                    return addDelay(sender, (AudioDelay) args.getArgs()[3], regionManager, regionId);
+                    edited = addDelay(sender, (AudioDelay) args.getArgs()[3], regionManager, regionId);
+                    break;
                 case 4:
-                    return removeDelay(sender, (AudioDelay) args.getArgs()[3], regionManager, regionId);
+                    edited = removeDelay(sender, (AudioDelay) args.getArgs()[3], regionManager, regionId);
+                    break;
             }
+            if (edited) {
+                plugin.getRegionIndex().invalidate(player.getWorld());
+            }
+            return edited;
         }
-        return false;
     }
 
 
@@ -194,10 +201,7 @@ public class RegionCommand implements Command {
             return false;
         }
 
-        if (!saveRegionSetFlag(regionManager, region, plugin.getAudioFlag(), audioTracks)) {
-            plugin.getMessenger().sendErrorMessage(sender, "failed.worldguard-save");
-            return false;
-        }
+        saveRegionSetFlag(sender, regionManager, region, plugin.getAudioFlag(), audioTracks);
 
         plugin.getMessenger().sendMessage(sender, "succeeded.audio-added", audio, regionId);
         return true;
@@ -215,10 +219,7 @@ public class RegionCommand implements Command {
             return false;
         }
 
-        if (!saveRegionSetFlag(regionManager, region, plugin.getAudioFlag(), audioTracks)) {
-            plugin.getMessenger().sendErrorMessage(sender, "failed.worldguard-save");
-            return false;
-        }
+        saveRegionSetFlag(sender, regionManager, region, plugin.getAudioFlag(), audioTracks);
 
         plugin.getMessenger().sendMessage(sender, "succeeded.audio-removed", audio, regionId);
         return true;
@@ -236,10 +237,7 @@ public class RegionCommand implements Command {
             return false;
         }
 
-        if (!saveRegionSetFlag(regionManager, region, plugin.getAudioDelayFlag(), audioDelays)) {
-            plugin.getMessenger().sendErrorMessage(sender, "failed.worldguard-save");
-            return false;
-        }
+        saveRegionSetFlag(sender, regionManager, region, plugin.getAudioDelayFlag(), audioDelays);
 
         plugin.getMessenger().sendMessage(sender, "succeeded.delay-added", delay, regionId);
         return true;
@@ -257,26 +255,25 @@ public class RegionCommand implements Command {
             return false;
         }
 
-        if (!saveRegionSetFlag(regionManager, region, plugin.getAudioDelayFlag(), audioDelays)) {
-            plugin.getMessenger().sendErrorMessage(sender, "failed.worldguard-save");
-            return false;
-        }
+        saveRegionSetFlag(sender, regionManager, region, plugin.getAudioDelayFlag(), audioDelays);
 
         plugin.getMessenger().sendMessage(sender, "succeeded.delay-removed", delay, regionId);
         return true;
     }
 
 
-    private <T> boolean saveRegionSetFlag(RegionManager regionManager, ProtectedRegion region, SetFlag<T> flag, Set<T> value) {
-        try {
-            region.setFlag(flag, value);
-            regionManager.saveChanges();
-            return true;
-        } catch (StorageException e) {
-            String msg = "Failed to save '" + regionManager + "' WorldGuard region changes from edit command";
-            plugin.getLogger().log(Level.WARNING, msg, e);
-            return false;
-        }
+    private <T> void saveRegionSetFlag(final CommandSender sender, RegionManager regionManager, ProtectedRegion region,
+                                       SetFlag<T> flag, Set<T> value) {
+        region.setFlag(flag, value);
+        // The region change is already in effect, so only notify the sender if it could not be persisted
+        plugin.getRegionSaveQueue().save(regionManager, new SaveCallback() {
+            @Override
+            public void onSave(Exception error) {
+                if (error != null) {
+                    plugin.getMessenger().sendErrorMessage(sender, "failed.worldguard-save");
+                }
+            }
+        });
     }
 
     private <T> Set<T> getRegionSetFlag(ProtectedRegion region, SetFlag<T> setFlag) {
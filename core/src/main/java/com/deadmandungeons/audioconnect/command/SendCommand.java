@@ -3,6 +3,7 @@ package com.deadmandungeons.audioconnect.command;
 import com.deadmandungeons.audioconnect.AudioConnect;
 import com.deadmandungeons.audioconnect.AudioConnectClient.PlayerConnection;
 import com.deadmandungeons.audioconnect.messages.AudioMessage;
+import com.deadmandungeons.audioconnect.region.AudioRegion;
 import com.deadmandungeons.deadmanplugin.command.ArgumentInfo;
 import com.deadmandungeons.deadmanplugin.command.ArgumentInfo.ArgType;
 import com.deadmandungeons.deadmanplugin.command.Arguments;
@@ -153,6 +154,16 @@ public class SendCommand implements Command {
             return false;
         }
 
+        // Audio regions are precompiled by the region index, so only fall back to WorldGuard for other regions,
+        // and for regions that were redefined or reloaded since the index was built
+        AudioRegion audioRegion = null;
+        if (plugin.getRegionIndex().isCurrent(world)) {
+            audioRegion = plugin.getRegionIndex().getIndex(world).getRegion(region.getId());
+            if (audioRegion != null && audioRegion.getRegion() != region) {
+                audioRegion = null;
+            }
+        }
+
         Player insidePlayer = null;
         List<AudioMessage> audioMessages = new ArrayList<>();
         for (PlayerConnection playerConnection : plugin.getClient().getPlayerConnections()) {
@@ -162,7 +173,8 @@ public class SendCommand implements Command {
             }
 
             Location playerLoc = player.getLocation();
-            if (region.contains(playerLoc.getBlockX(), playerLoc.getBlockY(), playerLoc.getBlockZ())) {
+            int x = playerLoc.getBlockX(), y = playerLoc.getBlockY(), z = playerLoc.getBlockZ();
+            if (audioRegion != null ? audioRegion.contains(x, y, z) : region.contains(x, y, z)) {
                 audioMessages.add(buildAudioMessage(player, audioId, trackId));
                 insidePlayer = player;
             }
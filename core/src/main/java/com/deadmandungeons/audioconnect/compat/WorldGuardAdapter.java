@@ -2,17 +2,20 @@ package com.deadmandungeons.audioconnect.compat;
 
 import com.deadmandungeons.audioconnect.AudioConnect;
 import com.deadmandungeons.audioconnect.flags.FlagAdapter;
-import com.sk89q.worldguard.protection.ApplicableRegionSet;
 import com.sk89q.worldguard.protection.flags.Flag;
 import com.sk89q.worldguard.protection.flags.SetFlag;
 import com.sk89q.worldguard.protection.managers.RegionManager;
+import com.sk89q.worldguard.protection.regions.ProtectedPolygonalRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
 import org.bukkit.Bukkit;
-import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.util.BlockVector;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -23,6 +26,8 @@ public abstract class WorldGuardAdapter {
     private static final Pattern VERSION_PATTERN = Pattern.compile(VERSION_REGEX);
     private static final Comparator<String> VERSION_COMPARATOR = new VersionComparator();
 
+    private final ConcurrentHashMap<UUID, RegionManager> regionManagers = new ConcurrentHashMap<>();
+
     public abstract void initRegionAdapter();
 
     public abstract <T, F extends Flag<T> & FlagAdapter<T>> SetFlag<T> initSetFlag(String flagName, F flag);
@@ -31,9 +36,49 @@ public abstract class WorldGuardAdapter {
 
     public abstract List<RegionManager> getRegionManagers();
 
-    public abstract RegionManager getRegionManager(World world);
+    /**
+     * Get the RegionManager of the given world from a cache to avoid the WorldGuard lookup.<br>
+     * This method is thread safe, but the RegionManager is obtained on the calling thread if it is not cached.
+     * @param world the world to get the RegionManager for
+     * @return the RegionManager of the given world, or <code>null</code> if regions are disabled in the world
+     */
+    public RegionManager getRegionManager(World world) {
+        UUID worldId = world.getUID();
+        RegionManager regionManager = regionManagers.get(worldId);
+        if (regionManager == null) {
+            regionManager = loadRegionManager(world);
+            if (regionManager != null) {
+                regionManagers.put(worldId, regionManager);
+            }
+        }
+        return regionManager;
+    }
+
+    /**
+     * Discard the cached RegionManager of the given world so that it is obtained from WorldGuard again when needed.
+     * This should be called when the world is loaded or unloaded.
+     * @param world the world to discard the RegionManager of
+     */
+    public void invalidateRegionManager(World world) {
+        regionManagers.remove(world.getUID());
+    }
+
+    /**
+     * Discard all of the cached RegionManagers.
+     * This should be called periodically as WorldGuard replaces every RegionManager when its regions are reloaded.
+     */
+    public void invalidateRegionManagers() {
+        regionManagers.clear();
+    }
+
+    protected abstract RegionManager loadRegionManager(World world);
+
+    public abstract BlockVector getMinimumPoint(ProtectedRegion region);
+
+    public abstract BlockVector getMaximumPoint(ProtectedRegion region);
 
-    public abstract ApplicableRegionSet getApplicableRegions(RegionManager regionManager, Location location);
+    // The Y coordinate of each point is always 0
+    public abstract List<BlockVector> getPoints(ProtectedPolygonalRegion region);
 
 
     public static WorldGuardAdapter getInstance() {
@@ -46,17 +91,27 @@ public abstract class WorldGuardAdapter {
             getLogger().info("Detected WorldGuard version (" + versionString + "). Attempting to make AudioConnect compatible...");
 
             if (VERSION_COMPARATOR.compare(versionString, "7.0.0") >= 0) {
-                return new WorldGuardAdapterV7();
+                return newInstance("WorldGuardAdapterV7");
             } else if (VERSION_COMPARATOR.compare(versionString, "6.1.3") >= 0) {
-                return new WorldGuardAdapterV6_1_3();
+                return newInstance("WorldGuardAdapterV6_1_3");
             } else {
-                return new WorldGuardAdapterLegacy();
+                return newInstance("WorldGuardAdapterLegacy");
             }
         } else {
             throw new UnsupportedOperationException("Unable to parse invalid WorldGuard version string: \"" + worldGuardVersion + "\"");
         }
     }
 
+    // The adapters are compiled in separate modules against their own WorldGuard API, so they cannot be referenced directly
+    private static WorldGuardAdapter newInstance(String adapterName) {
+        String adapterClassName = WorldGuardAdapter.class.getPackage().getName() + "." + adapterName;
+        try {
+            return (WorldGuardAdapter) Class.forName(adapterClassName).newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Failed to load WorldGuard adapter " + adapterClassName, e);
+        }
+    }
+
     private static Logger getLogger() {
         return AudioConnect.getInstance().getLogger();
     }
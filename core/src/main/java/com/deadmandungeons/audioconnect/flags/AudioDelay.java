@@ -0,0 +1,80 @@
+package com.deadmandungeons.audioconnect.flags;
+
+import com.deadmandungeons.audioconnect.messages.AudioMessage.Range;
+import com.google.common.collect.MapMaker;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The value of a single entry in the <code>audio-delay</code> flag set.<br>
+ * Equality only considers the track ID so that a region can only have one delay per track. The instances created by
+ * {@link #of(Range, String)} are pooled by both the delay range and the track ID, so any two pooled delays
+ * with the same values are the same instance.
+ * @author Jon
+ */
+public class AudioDelay {
+
+    // Keyed by the full value because equals() ignores the delay range. Entries are removed once the delay is unreferenced.
+    private static final ConcurrentMap<List<Object>, AudioDelay> POOL = new MapMaker().weakValues().makeMap();
+
+    private final Range delayTime;
+    private final String trackId;
+
+    AudioDelay(Range delayTime, String trackId) {
+        this.delayTime = delayTime;
+        this.trackId = trackId;
+    }
+
+    static AudioDelay of(Range delayTime, @Nullable String trackId) {
+        List<Object> key = Arrays.<Object>asList(delayTime, trackId);
+        AudioDelay audioDelay = POOL.get(key);
+        if (audioDelay == null) {
+            audioDelay = new AudioDelay(delayTime, AudioTrack.internId(trackId));
+            AudioDelay previous = POOL.putIfAbsent(key, audioDelay);
+            if (previous != null) {
+                audioDelay = previous;
+            }
+        }
+        return audioDelay;
+    }
+
+    public Range getDelayTime() {
+        return delayTime;
+    }
+
+    @Nullable
+    public String getTrackId() {
+        return trackId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(trackId);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof AudioDelay)) {
+            return false;
+        }
+        AudioDelay other = (AudioDelay) obj;
+        return Objects.equals(trackId, other.trackId);
+    }
+
+    @Override
+    public String toString() {
+        String str = delayTime.toString();
+        if (trackId != null) {
+            str += " (track: " + trackId + ")";
+        }
+        return str;
+    }
+
+}
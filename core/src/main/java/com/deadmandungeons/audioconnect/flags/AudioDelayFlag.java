@@ -4,7 +4,6 @@ import com.deadmandungeons.audioconnect.AudioConnect;
 import com.deadmandungeons.audioconnect.flags.compat.FlagHandler;
 import com.deadmandungeons.audioconnect.flags.compat.LegacyFlag;
 import com.deadmandungeons.audioconnect.messages.AudioMessage.Range;
-import com.deadmandungeons.connect.commons.ConnectUtils;
 import com.deadmandungeons.connect.commons.messenger.exceptions.IdentifierSyntaxException;
 import com.sk89q.worldguard.protection.flags.Flag;
 import com.sk89q.worldguard.protection.flags.FlagContext;
@@ -37,37 +36,30 @@ public class AudioDelayFlag extends Flag<AudioDelay> implements FlagHandler<Audi
     public AudioDelay parseInput(String input) throws InvalidFlagFormat {
         Range delayTime = null;
         String trackId = null;
-        String[] properties = input.split(":");
-        if (!properties[0].startsWith("time=")) {
-            properties[0] = "time=" + properties[0];
-        }
-        for (String property : properties) {
-            String[] keyValuePair = property.split("=");
-            if (keyValuePair.length != 2) {
-                throw new InvalidFlagFormat("AudioDelay must be in the format ':<key>=<value>' following the delay range or constant");
-            }
-            String key = keyValuePair[0], value = keyValuePair[1];
-            if (delayTime == null && key.equals("time")) {
+        FlagInput properties = new FlagInput(input, "time", "AudioDelay must be in the format ':<key>=<value>' following the delay range or constant");
+        while (properties.next()) {
+            String value = properties.getValue();
+            if (delayTime == null && properties.isKey("time")) {
                 delayTime = Range.parse(value);
                 if (delayTime == null) {
                     throw new InvalidFlagFormat(plugin.getMessenger().getMessage("failed.invalid-delay-range", true, value));
                 }
-            } else if (trackId == null && key.equals("track")) {
+            } else if (trackId == null && properties.isKey("track")) {
                 trackId = value;
                 try {
-                    ConnectUtils.validateIdentifier(trackId);
+                    FlagInput.validateIdentifier(trackId);
                 } catch (IdentifierSyntaxException e) {
                     throw new InvalidFlagFormat("track " + e.getMessage());
                 }
             } else {
-                throw new InvalidFlagFormat("Duplicate or unknown AudioDelay property '" + key + "'");
+                throw new InvalidFlagFormat("Duplicate or unknown AudioDelay property '" + properties.getKey() + "'");
             }
         }
         if (delayTime == null) {
             throw new InvalidFlagFormat("AudioDelay is missing required 'time' property");
         }
 
-        return new AudioDelay(delayTime, trackId);
+        return AudioDelay.of(delayTime, trackId);
     }
 
     @Override
@@ -89,13 +81,13 @@ public class AudioDelayFlag extends Flag<AudioDelay> implements FlagHandler<Audi
                 }
                 try {
                     trackId = (String) rawTrackId;
-                    ConnectUtils.validateIdentifier(trackId);
+                    FlagInput.validateIdentifier(trackId);
                 } catch (IdentifierSyntaxException e) {
                     return null;
                 }
             }
 
-            return new AudioDelay(delayTime, trackId);
+            return AudioDelay.of(delayTime, trackId);
         }
         return null;
     }
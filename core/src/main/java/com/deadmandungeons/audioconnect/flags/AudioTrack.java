@@ -0,0 +1,166 @@
+package com.deadmandungeons.audioconnect.flags;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.bukkit.World;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * The value of a single entry in the <code>audio</code> flag set.<br>
+ * The same few audio IDs are typically referenced by a large number of regions, so the instances created by
+ * {@link #of(String, String, DayTime)} are pooled, and two equal pooled tracks are always the same instance.
+ * @author Jon
+ */
+public class AudioTrack {
+
+    private static final Interner<AudioTrack> INTERNER = Interners.newWeakInterner();
+    private static final Interner<String> ID_INTERNER = Interners.newWeakInterner();
+
+    private final String audioId;
+    private final String trackId;
+    private final DayTime dayTime;
+    private final int hash;
+
+    public AudioTrack(String audioId) {
+        this(audioId, null, null);
+    }
+
+    public AudioTrack(String audioId, String trackId) {
+        this(audioId, trackId, null);
+    }
+
+    public AudioTrack(String audioId, String trackId, DayTime dayTime) {
+        this.audioId = audioId;
+        this.trackId = trackId;
+        this.dayTime = dayTime;
+        hash = 31 * (31 * audioId.hashCode() + Objects.hashCode(trackId)) + Objects.hashCode(dayTime);
+    }
+
+    /**
+     * @param audioId the audio ID of the track
+     * @param trackId the ID of the track to play the audio on, or <code>null</code> for the default track
+     * @param dayTime the time of day the audio should be played at, or <code>null</code> to play it at any time
+     * @return the pooled AudioTrack instance for the given values
+     */
+    public static AudioTrack of(String audioId, @Nullable String trackId, @Nullable DayTime dayTime) {
+        return INTERNER.intern(new AudioTrack(internId(audioId), internId(trackId), dayTime));
+    }
+
+    // Share the ID strings between every pooled flag value
+    static String internId(String id) {
+        return (id != null ? ID_INTERNER.intern(id) : null);
+    }
+
+    public String getAudioId() {
+        return audioId;
+    }
+
+    @Nullable
+    public String getTrackId() {
+        return trackId;
+    }
+
+    @Nullable
+    public DayTime getDayTime() {
+        return dayTime;
+    }
+
+    @Override // audio: [Desert-2(track: primary, time: night)]
+    public String toString() {
+        StringBuilder builder = new StringBuilder(audioId);
+        if (trackId != null || dayTime != null) {
+            builder.append("(");
+            if (trackId != null) {
+                builder.append("track: ").append(trackId);
+            }
+            if (dayTime != null) {
+                if (trackId != null) {
+                    builder.append(", ");
+                }
+                builder.append("time: ").append(dayTime.name().toLowerCase());
+            }
+            builder.append(")");
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof AudioTrack)) {
+            return false;
+        }
+        AudioTrack other = (AudioTrack) obj;
+        return hash == other.hash && audioId.equals(other.audioId) && Objects.equals(trackId, other.trackId) && Objects.equals(dayTime, other.dayTime);
+    }
+
+
+    public enum DayTime {
+        DAY(0, 13000),
+        NIGHT(13000, 24000),
+        MORNING(0, 6000),
+        AFTERNOON(6000, 13000);
+
+        public static final ImmutableList<DayTime> VALUES = ImmutableList.copyOf(values());
+
+        private final int minTicks, maxTicks;
+
+        DayTime(int minTicks, int maxTicks) {
+            this.minTicks = minTicks;
+            this.maxTicks = maxTicks;
+        }
+
+        public boolean check(World world) {
+            return check(world.getTime());
+        }
+
+        public boolean check(long time) {
+            return time >= minTicks && time < maxTicks;
+        }
+
+        /**
+         * @param period one of the periods returned by {@link #getPeriod(long)}
+         * @return <code>true</code> if the whole given period falls within this DayTime
+         */
+        public boolean check(DayTime period) {
+            return period.minTicks >= minTicks && period.maxTicks <= maxTicks;
+        }
+
+        /**
+         * Every DayTime is made up of one or more of the disjoint MORNING, AFTERNOON and NIGHT periods,
+         * so the result of {@link #check(long)} for any DayTime only changes when the period changes.
+         * @param time the time of day in ticks as returned by {@link World#getTime()}
+         * @return the MORNING, AFTERNOON or NIGHT period containing the given time
+         */
+        public static DayTime getPeriod(long time) {
+            if (time < MORNING.maxTicks) {
+                return MORNING;
+            } else if (time < AFTERNOON.maxTicks) {
+                return AFTERNOON;
+            } else {
+                return NIGHT;
+            }
+        }
+
+        public static DayTime byName(String name) {
+            for (DayTime dayTime : VALUES) {
+                if (dayTime.name().equalsIgnoreCase(name)) {
+                    return dayTime;
+                }
+            }
+            return null;
+        }
+
+    }
+
+}
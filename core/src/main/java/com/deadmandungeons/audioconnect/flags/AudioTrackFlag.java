@@ -4,7 +4,6 @@ import com.deadmandungeons.audioconnect.AudioConnect;
 import com.deadmandungeons.audioconnect.flags.AudioTrack.DayTime;
 import com.deadmandungeons.audioconnect.flags.compat.FlagHandler;
 import com.deadmandungeons.audioconnect.flags.compat.LegacyFlag;
-import com.deadmandungeons.connect.commons.ConnectUtils;
 import com.deadmandungeons.connect.commons.messenger.exceptions.IdentifierSyntaxException;
 import com.sk89q.worldguard.protection.flags.Flag;
 import com.sk89q.worldguard.protection.flags.FlagContext;
@@ -39,20 +38,13 @@ public class AudioTrackFlag extends Flag<AudioTrack> implements FlagHandler<Audi
         String audioId = null;
         String trackId = null;
         DayTime dayTime = null;
-        String[] properties = input.split(":");
-        if (!properties[0].startsWith("id=")) {
-            properties[0] = "id=" + properties[0];
-        }
-        for (String property : properties) {
-            String[] keyValuePair = property.split("=");
-            if (keyValuePair.length != 2) {
-                throw new InvalidFlagFormat("AudioTrack settings must be in the format ':<key>=<value>' following the audio ID");
-            }
-            String key = keyValuePair[0], value = keyValuePair[1];
-            if (audioId == null && key.equals("id")) {
+        FlagInput properties = new FlagInput(input, "id", "AudioTrack settings must be in the format ':<key>=<value>' following the audio ID");
+        while (properties.next()) {
+            String value = properties.getValue();
+            if (audioId == null && properties.isKey("id")) {
                 audioId = value;
                 try {
-                    ConnectUtils.validateIdentifier(audioId);
+                    FlagInput.validateIdentifier(audioId);
                 } catch (IdentifierSyntaxException e) {
                     String msg = plugin.getMessenger().getMessage("failed.invalid-audio-id", false, audioId, e.getMessage());
                     throw new InvalidFlagFormat(msg);
@@ -62,28 +54,28 @@ public class AudioTrackFlag extends Flag<AudioTrack> implements FlagHandler<Audi
                     String msg = plugin.getMessenger().getMessage("failed.invalid-audio-id", false, audioId, reason);
                     throw new InvalidFlagFormat(msg);
                 }
-            } else if (trackId == null && key.equals("track")) {
+            } else if (trackId == null && properties.isKey("track")) {
                 trackId = value;
                 try {
-                    ConnectUtils.validateIdentifier(trackId);
+                    FlagInput.validateIdentifier(trackId);
                 } catch (IdentifierSyntaxException e) {
                     String msg = plugin.getMessenger().getMessage("failed.invalid-track-id", false, trackId, e.getMessage());
                     throw new InvalidFlagFormat(msg);
                 }
-            } else if (dayTime == null && key.equals("time")) {
+            } else if (dayTime == null && properties.isKey("time")) {
                 dayTime = DayTime.byName(value);
                 if (dayTime == null) {
                     throw new InvalidFlagFormat("AudioTrack time property must be one of " + StringUtils.join(DayTime.VALUES, ", "));
                 }
             } else {
-                throw new InvalidFlagFormat("Duplicate or unknown AudioTrack property '" + key + "'");
+                throw new InvalidFlagFormat("Duplicate or unknown AudioTrack property '" + properties.getKey() + "'");
             }
         }
         if (audioId == null) {
             throw new InvalidFlagFormat("AudioTrack is missing required 'audio' property");
         }
 
-        return new AudioTrack(audioId, trackId, dayTime);
+        return AudioTrack.of(audioId, trackId, dayTime);
     }
 
     @Override
@@ -97,7 +89,7 @@ public class AudioTrackFlag extends Flag<AudioTrack> implements FlagHandler<Audi
                     return null;
                 }
                 String audioId = (String) rawAudioId;
-                ConnectUtils.validateIdentifier(audioId);
+                FlagInput.validateIdentifier(audioId);
 
                 String trackId = null;
                 Object rawTrackId = map.get("track");
@@ -106,7 +98,7 @@ public class AudioTrackFlag extends Flag<AudioTrack> implements FlagHandler<Audi
                         return null;
                     }
                     trackId = (String) rawTrackId;
-                    ConnectUtils.validateIdentifier(trackId);
+                    FlagInput.validateIdentifier(trackId);
                 }
 
                 DayTime dayTime = null;
@@ -117,15 +109,15 @@ public class AudioTrackFlag extends Flag<AudioTrack> implements FlagHandler<Audi
                     }
                 }
 
-                return new AudioTrack(audioId, trackId, dayTime);
+                return AudioTrack.of(audioId, trackId, dayTime);
             } else {
                 if (!(object instanceof String)) {
                     return null;
                 }
                 String audioId = (String) object;
-                ConnectUtils.validateIdentifier(audioId);
+                FlagInput.validateIdentifier(audioId);
 
-                return new AudioTrack(audioId, null, null);
+                return AudioTrack.of(audioId, null, null);
             }
         } catch (IdentifierSyntaxException e) {
             return null;
@@ -0,0 +1,142 @@
+package com.deadmandungeons.audioconnect.flags;
+
+import com.deadmandungeons.connect.commons.ConnectUtils;
+import com.deadmandungeons.connect.commons.messenger.exceptions.IdentifierSyntaxException;
+import com.google.common.collect.Sets;
+import com.sk89q.worldguard.protection.flags.InvalidFlagFormat;
+
+import java.util.Set;
+
+/**
+ * A single pass scanner over the <code>&lt;value&gt;:&lt;key&gt;=&lt;value&gt;:...</code> syntax of the custom flag inputs.<br>
+ * The key of the first property may be omitted, in which case the default key is used, but the first property
+ * may not have any other key. Keys are matched in place
+ * by {@link #isKey(String)}, so the only strings allocated while scanning are the property values.
+ * @author Jon
+ */
+final class FlagInput {
+
+    // The identifiers referenced by regions are highly repetitive, so remember the ones that have already been validated
+    private static final int MAX_VALID_IDENTIFIERS = 4096;
+    private static final Set<String> VALID_IDENTIFIERS = Sets.newConcurrentHashSet();
+
+    private final String input;
+    private final String defaultKey;
+    private final String formatMessage;
+
+    private int position;
+    private int keyStart, keyEnd;
+    private String value;
+
+    /**
+     * @param input the raw flag input
+     * @param defaultKey the key of the first property if it is not specified
+     * @param formatMessage the message of the {@link InvalidFlagFormat} thrown for a malformed property
+     */
+    FlagInput(String input, String defaultKey, String formatMessage) {
+        this.input = input;
+        this.defaultKey = defaultKey;
+        this.formatMessage = formatMessage;
+    }
+
+    /**
+     * Advance to the next property.
+     * @return <code>true</code> if there was another property, and <code>false</code> if the end of the input was reached
+     * @throws InvalidFlagFormat if the next property is not in the format <code>&lt;key&gt;=&lt;value&gt;</code>,
+     * or if the first property has a key other than the default key
+     */
+    boolean next() throws InvalidFlagFormat {
+        if (position > 0 && isBlankTail(position)) {
+            return false;
+        }
+
+        int end = indexOf(':', position, input.length());
+        if (end < 0) {
+            end = input.length();
+        }
+        int separator = indexOf('=', position, end);
+        if (separator < 0) {
+            // Only the key of the first property may be omitted
+            if (position > 0) {
+                throw new InvalidFlagFormat(formatMessage);
+            }
+            keyStart = -1;
+            keyEnd = -1;
+        } else {
+            if (indexOf('=', separator + 1, end) >= 0) {
+                throw new InvalidFlagFormat(formatMessage);
+            }
+            // The first property is always the default property, even if its key is specified
+            if (position == 0 && (separator != defaultKey.length() || !input.startsWith(defaultKey))) {
+                throw new InvalidFlagFormat(formatMessage);
+            }
+            keyStart = position;
+            keyEnd = separator;
+        }
+        if (separator + 1 == end) {
+            throw new InvalidFlagFormat(formatMessage);
+        }
+
+        value = input.substring(separator + 1, end);
+        position = end + 1;
+        return true;
+    }
+
+    /**
+     * @param key the key to compare
+     * @return <code>true</code> if the current property has the given key
+     */
+    boolean isKey(String key) {
+        if (keyStart < 0) {
+            return key.equals(defaultKey);
+        }
+        return keyEnd - keyStart == key.length() && input.regionMatches(keyStart, key, 0, key.length());
+    }
+
+    /**
+     * @return the key of the current property
+     */
+    String getKey() {
+        return (keyStart < 0 ? defaultKey : input.substring(keyStart, keyEnd));
+    }
+
+    /**
+     * @return the value of the current property
+     */
+    String getValue() {
+        return value;
+    }
+
+    private int indexOf(char c, int fromIndex, int toIndex) {
+        int index = input.indexOf(c, fromIndex);
+        return (index < toIndex ? index : -1);
+    }
+
+    // Trailing separators are ignored like String.split() ignores trailing empty strings
+    private boolean isBlankTail(int index) {
+        for (int i = index; i < input.length(); i++) {
+            if (input.charAt(i) != ':') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Equivalent to {@link ConnectUtils#validateIdentifier(String)}, but an identifier that has
+     * already been validated successfully is not validated again.
+     * @param identifier the identifier to validate
+     * @throws IdentifierSyntaxException if the given identifier is invalid
+     */
+    static void validateIdentifier(String identifier) throws IdentifierSyntaxException {
+        if (!VALID_IDENTIFIERS.contains(identifier)) {
+            ConnectUtils.validateIdentifier(identifier);
+            if (VALID_IDENTIFIERS.size() >= MAX_VALID_IDENTIFIERS) {
+                VALID_IDENTIFIERS.clear();
+            }
+            VALID_IDENTIFIERS.add(identifier);
+        }
+    }
+
+}
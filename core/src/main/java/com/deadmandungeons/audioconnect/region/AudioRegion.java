@@ -0,0 +1,272 @@
+package com.deadmandungeons.audioconnect.region;
+
+import com.deadmandungeons.audioconnect.flags.AudioDelay;
+import com.deadmandungeons.audioconnect.flags.AudioTrack;
+import com.sk89q.worldguard.protection.regions.ProtectedCuboidRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
+import org.bukkit.util.BlockVector;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of a WorldGuard region that has the <code>audio</code> and/or <code>audio-delay</code> flag set.<br>
+ * The flag values and bounding box are captured when the owning {@link WorldRegionIndex} is built,
+ * so any changes to the underlying region will only be reflected once the index has been rebuilt.<br>
+ * Polygonal regions are rasterized into a 16x16 column bitmask for each chunk of their bounding box, so that
+ * containment is a bit test instead of a point-in-polygon test against every edge. The column masks are carried over
+ * from the previous snapshot of the same region if its shape has not changed, so a rebuild only rasterizes changed polygons.
+ * @author Jon
+ */
+public final class AudioRegion {
+
+    private static final double SQRT_2 = Math.sqrt(2);
+    // Polygons covering more columns than this are not rasterized to bound the memory and build time
+    private static final long MAX_RASTER_COLUMNS = 1 << 20;
+    private static final long[] FULL_MASK = {-1L, -1L, -1L, -1L};
+
+    private final ProtectedRegion region;
+    private final int ordinal;
+    private final String id;
+    private final int priority;
+    private final Set<AudioTrack> audioTracks;
+    private final Set<AudioDelay> audioDelays;
+    private final boolean timeSensitive;
+    private final int minX, minY, minZ;
+    private final int maxX, maxY, maxZ;
+    // The polygon points if this is a polygonal region, otherwise null
+    private final int[] pointsX, pointsZ;
+    private final boolean cuboid;
+    // The column masks of each chunk in the bounding box if this is a rasterized polygon, otherwise null.
+    // A mask is null if none of the columns of its chunk are inside the polygon.
+    private final long[][] columnMasks;
+    private final int minChunkX, minChunkZ, chunksZ;
+
+    AudioRegion(ProtectedRegion region, int ordinal, Set<AudioTrack> audioTracks, Set<AudioDelay> audioDelays, BlockVector min, BlockVector max,
+                List<BlockVector> points, @Nullable AudioRegion previous) {
+        this.region = region;
+        this.ordinal = ordinal;
+        this.audioTracks = audioTracks;
+        this.audioDelays = audioDelays;
+        timeSensitive = hasDayTime(audioTracks);
+        id = region.getId();
+        priority = region.getPriority();
+        minX = min.getBlockX();
+        minY = min.getBlockY();
+        minZ = min.getBlockZ();
+        maxX = max.getBlockX();
+        maxY = max.getBlockY();
+        maxZ = max.getBlockZ();
+        cuboid = (region instanceof ProtectedCuboidRegion);
+        if (points != null) {
+            pointsX = new int[points.size()];
+            pointsZ = new int[points.size()];
+            for (int i = 0; i < pointsX.length; i++) {
+                pointsX[i] = points.get(i).getBlockX();
+                pointsZ[i] = points.get(i).getBlockZ();
+            }
+        } else {
+            pointsX = null;
+            pointsZ = null;
+        }
+        minChunkX = minX >> 4;
+        minChunkZ = minZ >> 4;
+        chunksZ = (maxZ >> 4) - minChunkZ + 1;
+        if (previous != null && hasSameShape(previous)) {
+            columnMasks = previous.columnMasks;
+        } else if (pointsX != null && pointsX.length >= 3 && (long) (maxX - minX + 1) * (maxZ - minZ + 1) <= MAX_RASTER_COLUMNS) {
+            columnMasks = rasterize();
+        } else {
+            columnMasks = null;
+        }
+    }
+
+    /**
+     * @return the WorldGuard region this AudioRegion was created from
+     */
+    public ProtectedRegion getRegion() {
+        return region;
+    }
+
+    /**
+     * @return the ID of the WorldGuard region
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the priority of the WorldGuard region at the time this snapshot was taken
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return the value of the <code>audio</code> flag, or <code>null</code> if the flag is not set
+     */
+    @Nullable
+    public Set<AudioTrack> getAudioTracks() {
+        return audioTracks;
+    }
+
+    /**
+     * @return the value of the <code>audio-delay</code> flag, or <code>null</code> if the flag is not set
+     */
+    @Nullable
+    public Set<AudioDelay> getAudioDelays() {
+        return audioDelays;
+    }
+
+    /**
+     * @return <code>true</code> if any of the audio tracks of this region are constrained to a {@link AudioTrack.DayTime}
+     */
+    public boolean isTimeSensitive() {
+        return timeSensitive;
+    }
+
+    /**
+     * Check if the given block coordinates are inside this region.
+     * The bounding box is checked first, and a cuboid region or a rasterized polygonal region needs no further checks
+     * beyond a bit test, so WorldGuard is only consulted for the points of other region shapes that may be inside.
+     * @param x the block X coordinate
+     * @param y the block Y coordinate
+     * @param z the block Z coordinate
+     * @return <code>true</code> if this region contains the given point, and <code>false</code> otherwise
+     */
+    public boolean contains(int x, int y, int z) {
+        if (x < minX || x > maxX || z < minZ || z > maxZ || y < minY || y > maxY) {
+            return false;
+        }
+        if (columnMasks != null) {
+            long[] mask = columnMasks[((x >> 4) - minChunkX) * chunksZ + ((z >> 4) - minChunkZ)];
+            int bit = ((z & 15) << 4) | (x & 15);
+            return mask != null && (mask[bit >> 6] & (1L << bit)) != 0;
+        }
+        return cuboid || region.contains(x, y, z);
+    }
+
+    /**
+     * Get a lower bound of the distance between the given point and the boundary of this region.
+     * The distance is measured in blocks along the axis of greatest movement (chebyshev distance),
+     * so any point that is less than the returned distance away from the given point is guaranteed
+     * to be inside this region if and only if the given point is.
+     * @param x the block X coordinate
+     * @param y the block Y coordinate
+     * @param z the block Z coordinate
+     * @return the distance to the nearest point at which containment in this region may change
+     */
+    int getBoundaryDistance(int x, int y, int z) {
+        int outsideDistance = max(minX - x, x - maxX, minZ - z, z - maxZ, minY - y, y - maxY);
+        if (outsideDistance > 0) {
+            // A region can only be entered through its bounding box
+            return outsideDistance;
+        }
+        int insideYDistance = Math.min(y - minY, maxY - y) + 1;
+        if (cuboid) {
+            return Math.min(min(x - minX, maxX - x, z - minZ, maxZ - z) + 1, insideYDistance);
+        }
+        if (pointsX == null || pointsX.length < 3) {
+            // Unknown shape, so containment may change anywhere within the bounding box
+            return 0;
+        }
+
+        // Any movement shorter than the distance to the nearest edge cannot cross the polygon outline
+        int edgeDistance = (int) (getEdgeDistance(x, z) / SQRT_2);
+        if (contains(x, y, z)) {
+            return Math.min(edgeDistance, insideYDistance);
+        }
+        return edgeDistance;
+    }
+
+    private boolean hasSameShape(AudioRegion other) {
+        return other.region == region && other.minX == minX && other.minY == minY && other.minZ == minZ && other.maxX == maxX
+                && other.maxY == maxY && other.maxZ == maxZ && Arrays.equals(other.pointsX, pointsX) && Arrays.equals(other.pointsZ, pointsZ);
+    }
+
+    private long[][] rasterize() {
+        long[][] masks = new long[((maxX >> 4) - minChunkX + 1) * chunksZ][];
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                // The Y range is already covered by the bounding box, so only the polygon outline is tested
+                if (region.contains(x, minY, z)) {
+                    int index = ((x >> 4) - minChunkX) * chunksZ + ((z >> 4) - minChunkZ);
+                    if (masks[index] == null) {
+                        masks[index] = new long[4];
+                    }
+                    int bit = ((z & 15) << 4) | (x & 15);
+                    masks[index][bit >> 6] |= 1L << bit;
+                }
+            }
+        }
+        // Chunks fully inside the polygon share a single mask
+        for (int i = 0; i < masks.length; i++) {
+            if (masks[i] != null && Arrays.equals(masks[i], FULL_MASK)) {
+                masks[i] = FULL_MASK;
+            }
+        }
+        return masks;
+    }
+
+    private double getEdgeDistance(int x, int z) {
+        double minDistanceSquared = Double.MAX_VALUE;
+        for (int i = 0, j = pointsX.length - 1; i < pointsX.length; j = i++) {
+            double edgeX = pointsX[i] - pointsX[j], edgeZ = pointsZ[i] - pointsZ[j];
+            double lengthSquared = edgeX * edgeX + edgeZ * edgeZ;
+            double t = (lengthSquared > 0 ? ((x - pointsX[j]) * edgeX + (z - pointsZ[j]) * edgeZ) / lengthSquared : 0);
+            t = Math.max(0, Math.min(1, t));
+            double distanceX = x - (pointsX[j] + t * edgeX), distanceZ = z - (pointsZ[j] + t * edgeZ);
+            minDistanceSquared = Math.min(minDistanceSquared, distanceX * distanceX + distanceZ * distanceZ);
+        }
+        return Math.sqrt(minDistanceSquared);
+    }
+
+    // The position of this region in the owning index which is used to build canonical region set keys
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    int getMinX() {
+        return minX;
+    }
+
+    int getMinZ() {
+        return minZ;
+    }
+
+    int getMaxX() {
+        return maxX;
+    }
+
+    int getMaxZ() {
+        return maxZ;
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+
+
+    private static int max(int a, int b, int c, int d, int e, int f) {
+        return Math.max(Math.max(Math.max(a, b), Math.max(c, d)), Math.max(e, f));
+    }
+
+    private static int min(int a, int b, int c, int d) {
+        return Math.min(Math.min(a, b), Math.min(c, d));
+    }
+
+    static boolean hasDayTime(Set<AudioTrack> audioTracks) {
+        if (audioTracks != null) {
+            for (AudioTrack audioTrack : audioTracks) {
+                if (audioTrack.getDayTime() != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,318 @@
+package com.deadmandungeons.audioconnect.region;
+
+import com.deadmandungeons.audioconnect.compat.WorldGuardAdapter;
+import com.deadmandungeons.audioconnect.flags.AudioDelay;
+import com.deadmandungeons.audioconnect.flags.AudioTrack;
+import com.google.common.collect.Sets;
+import com.sk89q.worldguard.protection.flags.SetFlag;
+import com.sk89q.worldguard.protection.managers.RegionManager;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * This class maintains a {@link WorldRegionIndex} for each loaded world containing only the WorldGuard regions
+ * that have the <code>audio</code> or <code>audio-delay</code> flag set.<br>
+ * WorldGuard does not notify of region changes, so the indexes are rebuilt asynchronously when a world is
+ * {@link #invalidate(World) invalidated} after an edit, and when a periodic asynchronous scan finds that the
+ * {@link WorldRegionIndex#getFingerprint(RegionManager, SetFlag, SetFlag) fingerprint} of the audio flags in a world
+ * no longer matches its index, which picks up edits made through WorldGuard directly.<br>
+ * Every such change increments the {@link #getVersion(World) version} of the world, which caches derived from
+ * region data can compare to detect that they are outdated.<br>
+ * Queries are thread safe and never block on a rebuild, as a rebuilt index simply replaces the previous snapshot.
+ * @author Jon
+ */
+public class AudioRegionIndex {
+
+    // Scan every world every 10 seconds for region edits that were not made through AudioConnect
+    private static final int SCAN_INTERVAL = 200;
+
+    private final Plugin plugin;
+    private final WorldGuardAdapter adapter;
+    private final SetFlag<AudioTrack> audioFlag;
+    private final SetFlag<AudioDelay> audioDelayFlag;
+
+    private final ConcurrentHashMap<UUID, WorldRegionIndex> indexes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final Set<UUID> dirtyWorlds = Sets.newConcurrentHashSet();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicBoolean scanning = new AtomicBoolean();
+    private volatile boolean dirtyAll;
+
+    private BukkitTask refreshTask;
+
+    public AudioRegionIndex(Plugin plugin, WorldGuardAdapter adapter, SetFlag<AudioTrack> audioFlag, SetFlag<AudioDelay> audioDelayFlag) {
+        this.plugin = plugin;
+        this.adapter = adapter;
+        this.audioFlag = audioFlag;
+        this.audioDelayFlag = audioDelayFlag;
+    }
+
+
+    /**
+     * Start the task that rebuilds invalidated and outdated indexes, and schedule the indexes of every loaded world to be built.
+     * This must be called on the main server thread.
+     */
+    public void start() {
+        if (refreshTask == null) {
+            dirtyAll = true;
+            refreshTask = Bukkit.getScheduler().runTaskTimer(plugin, new RefreshTask(), 1, 1);
+            Bukkit.getPluginManager().registerEvents(new WorldListener(), plugin);
+        }
+    }
+
+    /**
+     * Stop the refresh task and discard all indexes.
+     * This must be called on the main server thread.
+     */
+    public void stop() {
+        if (refreshTask != null) {
+            refreshTask.cancel();
+            refreshTask = null;
+        }
+        indexes.clear();
+        dirtyWorlds.clear();
+    }
+
+    /**
+     * Get the current index for the given world.
+     * If the world has not been indexed yet, an empty index is returned and the world is scheduled to be indexed,
+     * as building the index of a large world on the calling thread could stall the server.
+     * @param world the world to get the audio region index for
+     * @return the latest audio region index snapshot for the given world
+     */
+    public WorldRegionIndex getIndex(World world) {
+        UUID worldId = world.getUID();
+        WorldRegionIndex index = indexes.get(worldId);
+        if (index == null) {
+            dirtyWorlds.add(worldId);
+            // The placeholder is not cached, and its version never matches the version of the world
+            return WorldRegionIndex.empty(worldId, -1, 0);
+        }
+        return index;
+    }
+
+    /**
+     * Get the current region data version of the given world. The version is incremented every time the regions
+     * of the world are known to have changed, so it will differ from the {@link WorldRegionIndex#getVersion() version}
+     * of the current index until the index has been rebuilt.<br>
+     * This method is thread safe.
+     * @param world the world to get the region data version of
+     * @return the current region data version of the given world
+     */
+    public long getVersion(World world) {
+        return getVersion(world.getUID());
+    }
+
+    /**
+     * Check whether the current index of the given world has been built since the world was last {@link #invalidate(World) invalidated}.
+     * Edits made through WorldGuard directly are only detected by the periodic asynchronous scan,
+     * so they may not be reflected by an index that is current until the scan has invalidated the world.<br>
+     * This method is thread safe, and takes constant time.
+     * @param world the world to check the index of
+     * @return <code>true</code> if the current index of the given world is up to date
+     */
+    public boolean isCurrent(World world) {
+        WorldRegionIndex index = indexes.get(world.getUID());
+        return index != null && index.getVersion() == getVersion(world.getUID());
+    }
+
+    /**
+     * Increment the version of the given world and schedule its index to be rebuilt on the next server tick.
+     * This should be called after the audio flags of a region in the world have been changed.<br>
+     * This method is thread safe.
+     * @param world the world containing the changed region(s)
+     */
+    public void invalidate(World world) {
+        invalidate(world.getUID());
+    }
+
+    /**
+     * Increment the version of every world and schedule the indexes of every loaded world to be rebuilt on the next server tick.<br>
+     * This method is thread safe.
+     */
+    public void invalidateAll() {
+        for (AtomicLong version : versions.values()) {
+            version.incrementAndGet();
+        }
+        dirtyAll = true;
+    }
+
+
+    private long getVersion(UUID worldId) {
+        AtomicLong version = versions.get(worldId);
+        return (version != null ? version.get() : 0);
+    }
+
+    private void invalidate(UUID worldId) {
+        AtomicLong version = versions.get(worldId);
+        if (version == null) {
+            AtomicLong previous = versions.putIfAbsent(worldId, version = new AtomicLong());
+            if (previous != null) {
+                version = previous;
+            }
+        }
+        version.incrementAndGet();
+        dirtyWorlds.add(worldId);
+    }
+
+
+    private WorldRegionIndex buildIndex(UUID worldId, long version, long buildTime, RegionManager regionManager) {
+        if (regionManager == null) {
+            return WorldRegionIndex.empty(worldId, version, buildTime);
+        }
+        return WorldRegionIndex.build(worldId, version, buildTime, regionManager, indexes.get(worldId), adapter, audioFlag, audioDelayFlag);
+    }
+
+
+    private class RefreshTask implements Runnable {
+
+        private int ticks;
+
+        @Override
+        public void run() {
+            if (++ticks % SCAN_INTERVAL == 0 && !scanning.get()) {
+                // WorldGuard replaces the RegionManagers when its regions are reloaded
+                adapter.invalidateRegionManagers();
+                Map<UUID, RegionManager> regionManagers = new HashMap<>();
+                for (World world : Bukkit.getWorlds()) {
+                    RegionManager regionManager = adapter.getRegionManager(world);
+                    if (regionManager != null) {
+                        regionManagers.put(world.getUID(), regionManager);
+                    }
+                }
+                scanning.set(true);
+                Bukkit.getScheduler().runTaskAsynchronously(plugin, new ScanTask(regionManagers));
+            }
+            if (dirtyAll) {
+                dirtyAll = false;
+                for (World world : Bukkit.getWorlds()) {
+                    dirtyWorlds.add(world.getUID());
+                }
+            }
+            if (dirtyWorlds.isEmpty() || rebuilding.get()) {
+                return;
+            }
+
+            // RegionManagers must be obtained on the main thread, but reading the regions is thread safe
+            Map<UUID, RegionManager> regionManagers = new HashMap<>();
+            Map<UUID, Long> worldVersions = new HashMap<>();
+            Iterator<UUID> iterator = dirtyWorlds.iterator();
+            while (iterator.hasNext()) {
+                UUID worldId = iterator.next();
+                iterator.remove();
+
+                World world = Bukkit.getWorld(worldId);
+                if (world != null) {
+                    regionManagers.put(worldId, adapter.getRegionManager(world));
+                    worldVersions.put(worldId, getVersion(worldId));
+                } else {
+                    indexes.remove(worldId);
+                    versions.remove(worldId);
+                }
+            }
+
+            if (!regionManagers.isEmpty()) {
+                rebuilding.set(true);
+                Bukkit.getScheduler().runTaskAsynchronously(plugin, new RebuildTask(System.nanoTime(), regionManagers, worldVersions));
+            }
+        }
+
+    }
+
+    private class WorldListener implements Listener {
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onWorldLoad(WorldLoadEvent event) {
+            // WorldGuard loads the RegionManager of the world before this
+            adapter.invalidateRegionManager(event.getWorld());
+            adapter.getRegionManager(event.getWorld());
+            invalidate(event.getWorld());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onWorldUnload(WorldUnloadEvent event) {
+            adapter.invalidateRegionManager(event.getWorld());
+            indexes.remove(event.getWorld().getUID());
+            versions.remove(event.getWorld().getUID());
+        }
+
+    }
+
+    private class ScanTask implements Runnable {
+
+        private final Map<UUID, RegionManager> regionManagers;
+
+        private ScanTask(Map<UUID, RegionManager> regionManagers) {
+            this.regionManagers = regionManagers;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (Map.Entry<UUID, RegionManager> entry : regionManagers.entrySet()) {
+                    WorldRegionIndex index = indexes.get(entry.getKey());
+                    if (index == null) {
+                        continue;
+                    }
+                    long fingerprint = WorldRegionIndex.getFingerprint(entry.getValue(), audioFlag, audioDelayFlag);
+                    if (fingerprint != index.getFingerprint()) {
+                        invalidate(entry.getKey());
+                    }
+                }
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to scan WorldGuard regions for audio flag changes", e);
+            } finally {
+                scanning.set(false);
+            }
+        }
+
+    }
+
+    private class RebuildTask implements Runnable {
+
+        private final long buildTime;
+        private final Map<UUID, RegionManager> regionManagers;
+        private final Map<UUID, Long> worldVersions;
+
+        private RebuildTask(long buildTime, Map<UUID, RegionManager> regionManagers, Map<UUID, Long> worldVersions) {
+            this.buildTime = buildTime;
+            this.regionManagers = regionManagers;
+            this.worldVersions = worldVersions;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // A world that fails to build keeps its outdated index, which users detect by its version
+                for (Map.Entry<UUID, RegionManager> entry : regionManagers.entrySet()) {
+                    try {
+                        indexes.put(entry.getKey(), buildIndex(entry.getKey(), worldVersions.get(entry.getKey()), buildTime, entry.getValue()));
+                    } catch (Exception e) {
+                        plugin.getLogger().log(Level.WARNING, "Failed to rebuild audio region index of world " + entry.getKey(), e);
+                    }
+                }
+            } finally {
+                rebuilding.set(false);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,208 @@
+package com.deadmandungeons.audioconnect.region;
+
+import com.deadmandungeons.audioconnect.AudioConnectConfig;
+import com.deadmandungeons.audioconnect.AudioList;
+import com.deadmandungeons.audioconnect.DayTimeWatcher;
+import com.deadmandungeons.audioconnect.flags.AudioDelay;
+import com.deadmandungeons.audioconnect.flags.AudioTrack;
+import com.deadmandungeons.audioconnect.flags.AudioTrack.DayTime;
+import com.deadmandungeons.audioconnect.messages.AudioMessage.Range;
+import com.google.common.collect.ImmutableSet;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * This class resolves the audio and audio delay for each track from a set of overlapping audio regions.<br>
+ * Only the regions with the highest priority that have the respective flag set will apply, and the
+ * <code>__global__</code> region applies with the lowest precedence if it has the flag set.<br>
+ * Results are memoized in the {@link WorldRegionIndex} the regions belong to, keyed by the canonical set of
+ * applicable regions, the time of day period (only if any of those regions have time constrained audio),
+ * and the version of the {@link AudioList}. This way all of the players standing in the same combination
+ * of audio regions share a single {@link ResolvedAudio} instance.
+ * @author Jon
+ */
+public class AudioResolver {
+
+    private static final int MAX_CACHED_RESOLUTIONS = 4096;
+    private static final int[] NO_ORDINALS = new int[0];
+
+    private final AudioConnectConfig config;
+    private final AudioList audioList;
+    private final DayTimeWatcher dayTimeWatcher;
+
+    public AudioResolver(AudioConnectConfig config, AudioList audioList, DayTimeWatcher dayTimeWatcher) {
+        this.config = config;
+        this.audioList = audioList;
+        this.dayTimeWatcher = dayTimeWatcher;
+    }
+
+    /**
+     * @param index the index that the given regions were obtained from which provides the <code>__global__</code> region flags
+     * @param regions the audio regions containing the location to resolve the audio for
+     * @param world the world the audio is being resolved in which is used to get the time of day period snapshot
+     * @return the shared ResolvedAudio instance for the given regions
+     */
+    public ResolvedAudio resolve(WorldRegionIndex index, List<AudioRegion> regions, World world) {
+        if (!index.hasAudio()) {
+            return ResolvedAudio.NONE;
+        }
+
+        boolean timeSensitive = AudioRegion.hasDayTime(index.getGlobalAudioTracks());
+        int[] ordinals = (regions.isEmpty() ? NO_ORDINALS : new int[regions.size()]);
+        for (int i = 0; i < ordinals.length; i++) {
+            AudioRegion region = regions.get(i);
+            ordinals[i] = region.getOrdinal();
+            timeSensitive |= region.isTimeSensitive();
+        }
+        Arrays.sort(ordinals);
+
+        DayTime period = (timeSensitive ? dayTimeWatcher.getPeriod(world) : null);
+        ResolutionKey key = new ResolutionKey(ordinals, period, audioList.getVersion());
+
+        ResolvedAudio resolvedAudio = index.resolutions.get(key);
+        if (resolvedAudio == null) {
+            resolvedAudio = resolve(index, regions, period);
+            if (index.resolutions.size() >= MAX_CACHED_RESOLUTIONS) {
+                // Old audio list versions will never be used again
+                index.resolutions.clear();
+            }
+            index.resolutions.put(key, resolvedAudio);
+        }
+        return resolvedAudio;
+    }
+
+    /**
+     * @param index the index that the given regions were obtained from
+     * @param regions the audio regions containing a location
+     * @return <code>true</code> if the audio resolved for the given regions may change with the time of day
+     */
+    public boolean isTimeSensitive(WorldRegionIndex index, List<AudioRegion> regions) {
+        for (int i = 0; i < regions.size(); i++) {
+            if (regions.get(i).isTimeSensitive()) {
+                return true;
+            }
+        }
+        return AudioRegion.hasDayTime(index.getGlobalAudioTracks());
+    }
+
+    private ResolvedAudio resolve(WorldRegionIndex index, List<AudioRegion> regions, DayTime period) {
+        ProtectedRegion globalRegion = index.getGlobalRegion();
+        Map<String, ImmutableSet.Builder<String>> audioIdsByTrack = null;
+        Map<String, Range> audioDelayByTrack = null;
+        String defaultTrackId = config.getDefaultTrackId();
+
+        int audioTrackPriority = 0, audioDelayPriority = 0;
+        for (int i = -1; i < regions.size(); i++) {
+            Set<AudioTrack> audioTracks;
+            Set<AudioDelay> audioDelays;
+            int priority;
+            if (i == -1) {
+                if (globalRegion == null) {
+                    continue;
+                }
+                audioTracks = index.getGlobalAudioTracks();
+                audioDelays = index.getGlobalAudioDelays();
+                priority = globalRegion.getPriority();
+            } else {
+                AudioRegion region = regions.get(i);
+                audioTracks = region.getAudioTracks();
+                audioDelays = region.getAudioDelays();
+                priority = region.getPriority();
+            }
+
+            if (audioTracks != null && priority >= audioTrackPriority) {
+                if (priority > audioTrackPriority) {
+                    audioTrackPriority = priority;
+                    if (audioIdsByTrack != null) {
+                        audioIdsByTrack.clear();
+                    }
+                }
+
+                if (audioIdsByTrack == null) {
+                    audioIdsByTrack = new HashMap<>();
+                }
+                for (AudioTrack audioTrack : audioTracks) {
+                    if ((audioTrack.getDayTime() == null || audioTrack.getDayTime().check(period)) &&
+                            audioList.contains(audioTrack.getAudioId())) {
+                        // Specify default track ID rather than sending null
+                        String trackId = (audioTrack.getTrackId() != null ? audioTrack.getTrackId() : defaultTrackId);
+                        ImmutableSet.Builder<String> audioIds = audioIdsByTrack.get(trackId);
+                        if (audioIds == null) {
+                            audioIds = ImmutableSet.builder();
+                            audioIdsByTrack.put(trackId, audioIds);
+                        }
+
+                        audioIds.add(audioTrack.getAudioId());
+                    }
+                }
+            }
+
+            if (audioDelays != null && priority >= audioDelayPriority) {
+                if (priority > audioDelayPriority) {
+                    audioDelayPriority = priority;
+                    if (audioDelayByTrack != null) {
+                        audioDelayByTrack.clear();
+                    }
+                }
+
+                if (audioDelayByTrack == null) {
+                    audioDelayByTrack = new HashMap<>();
+                }
+                for (AudioDelay audioDelay : audioDelays) {
+                    // Specify default track ID rather than sending null
+                    String trackId = (audioDelay.getTrackId() != null ? audioDelay.getTrackId() : defaultTrackId);
+                    audioDelayByTrack.put(trackId, audioDelay.getDelayTime());
+                }
+            }
+        }
+
+        return ResolvedAudio.of(audioIdsByTrack, audioDelayByTrack);
+    }
+
+
+    private static class ResolutionKey {
+
+        private final int[] ordinals;
+        private final DayTime period;
+        private final int audioListVersion;
+        private final int hash;
+
+        private ResolutionKey(int[] ordinals, DayTime period, int audioListVersion) {
+            this.ordinals = ordinals;
+            this.period = period;
+            this.audioListVersion = audioListVersion;
+
+            int hash = Arrays.hashCode(ordinals);
+            hash = 31 * hash + Objects.hashCode(period);
+            hash = 31 * hash + audioListVersion;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof ResolutionKey)) {
+                return false;
+            }
+            ResolutionKey other = (ResolutionKey) obj;
+            return hash == other.hash && period == other.period && audioListVersion == other.audioListVersion &&
+                    Arrays.equals(ordinals, other.ordinals);
+        }
+
+    }
+
+}
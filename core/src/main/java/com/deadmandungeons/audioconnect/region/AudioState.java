@@ -0,0 +1,80 @@
+package com.deadmandungeons.audioconnect.region;
+
+import com.deadmandungeons.audioconnect.messages.AudioMessage.Range;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The immutable audio state of a single track which consists of the audio IDs that should be played
+ * and the audio delay range between them.<br>
+ * Instances are interned, so two equal states are always the same instance and can be compared by reference.
+ * @author Jon
+ */
+public final class AudioState {
+
+    private static final Interner<AudioState> INTERNER = Interners.newWeakInterner();
+
+    private final ImmutableSet<String> audioIds;
+    private final Range audioDelay;
+    private final int hash;
+
+    private AudioState(ImmutableSet<String> audioIds, Range audioDelay) {
+        this.audioIds = audioIds;
+        this.audioDelay = audioDelay;
+        hash = 31 * audioIds.hashCode() + Objects.hashCode(audioDelay);
+    }
+
+    /**
+     * @return an immutable set of the audio IDs of this state which is empty if the track has no audio
+     */
+    public Set<String> getAudioIds() {
+        return audioIds;
+    }
+
+    /**
+     * @return the audio delay range of this state, or <code>null</code> if the track has no audio delay
+     */
+    @Nullable
+    public Range getAudioDelay() {
+        return audioDelay;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof AudioState)) {
+            return false;
+        }
+        AudioState other = (AudioState) obj;
+        return hash == other.hash && audioIds.equals(other.audioIds) && Objects.equals(audioDelay, other.audioDelay);
+    }
+
+    @Override
+    public String toString() {
+        return "AudioState{audio=" + audioIds + ", delay=" + audioDelay + "}";
+    }
+
+
+    /**
+     * @param audioIds the audio IDs of the state, or <code>null</code> if the track has no audio
+     * @param audioDelay the audio delay range of the state, or <code>null</code> if the track has no audio delay
+     * @return the canonical AudioState instance for the given audio IDs and audio delay
+     */
+    public static AudioState of(@Nullable Set<String> audioIds, @Nullable Range audioDelay) {
+        ImmutableSet<String> immutableAudioIds = (audioIds != null ? ImmutableSet.copyOf(audioIds) : ImmutableSet.<String>of());
+        return INTERNER.intern(new AudioState(immutableAudioIds, audioDelay));
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.deadmandungeons.audioconnect.region;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sk89q.worldguard.protection.managers.RegionManager;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * This class coalesces the WorldGuard region changes made by AudioConnect into as few {@link RegionManager#saveChanges()}
+ * calls as possible, and performs them on a dedicated thread so a slow region storage never blocks the caller.<br>
+ * A RegionManager that is {@link #save(RegionManager, SaveCallback) marked dirty} is saved once {@link #SAVE_DELAY}
+ * milliseconds later, and any further changes to it within that window are included in the same save.
+ * Saves are performed one at a time in the order they became due.
+ * @author Jon
+ */
+public class RegionSaveQueue {
+
+    // Allow a burst of edits to accumulate for 1 second before saving
+    public static final long SAVE_DELAY = 1000;
+
+    private final Plugin plugin;
+    private final ScheduledExecutorService executor;
+
+    // Guarded by this
+    private final Map<RegionManager, PendingSave> pendingSaves = new HashMap<>();
+
+    public RegionSaveQueue(Plugin plugin) {
+        this.plugin = plugin;
+
+        ThreadFactoryBuilder threadFactory = new ThreadFactoryBuilder().setNameFormat("AudioConnect Region Saver").setDaemon(true);
+        executor = Executors.newSingleThreadScheduledExecutor(threadFactory.build());
+    }
+
+
+    /**
+     * Mark the given RegionManager as having unsaved changes, and schedule it to be saved
+     * if it is not already pending a save.<br>
+     * This method is thread safe.
+     * @param regionManager the RegionManager containing the changed regions
+     * @param callback the callback to notify on the main server thread once the changes have been saved,
+     * or <code>null</code> if the caller is not interested in the outcome
+     */
+    public void save(RegionManager regionManager, @Nullable SaveCallback callback) {
+        synchronized (this) {
+            PendingSave pendingSave = pendingSaves.get(regionManager);
+            if (pendingSave == null) {
+                pendingSave = new PendingSave(regionManager);
+                pendingSaves.put(regionManager, pendingSave);
+                if (!executor.isShutdown()) {
+                    executor.schedule(pendingSave, SAVE_DELAY, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (callback != null) {
+                pendingSave.callbacks.add(callback);
+            }
+        }
+    }
+
+    /**
+     * Stop the save thread, and immediately save every RegionManager that still has pending changes.
+     * This should be called when the plugin is being disabled, and will block until all changes have been saved.
+     */
+    public void shutdown() {
+        if (executor instanceof ScheduledThreadPoolExecutor) {
+            ((ScheduledThreadPoolExecutor) executor).setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<PendingSave> remaining;
+        synchronized (this) {
+            remaining = new ArrayList<>(pendingSaves.values());
+        }
+        for (PendingSave pendingSave : remaining) {
+            pendingSave.run();
+        }
+    }
+
+
+    private class PendingSave implements Runnable {
+
+        private final RegionManager regionManager;
+        private final List<SaveCallback> callbacks = new ArrayList<>(1);
+
+        private PendingSave(RegionManager regionManager) {
+            this.regionManager = regionManager;
+        }
+
+        @Override
+        public void run() {
+            // Changes made from now on must be included in another save
+            synchronized (RegionSaveQueue.this) {
+                if (pendingSaves.get(regionManager) != this) {
+                    return;
+                }
+                pendingSaves.remove(regionManager);
+            }
+
+            Exception error = null;
+            try {
+                regionManager.saveChanges();
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to save '" + regionManager + "' WorldGuard region changes", e);
+                error = e;
+            }
+
+            if (!callbacks.isEmpty() && plugin.isEnabled()) {
+                final Exception result = error;
+                Bukkit.getScheduler().runTask(plugin, new Runnable() {
+                    @Override
+                    public void run() {
+                        for (SaveCallback callback : callbacks) {
+                            callback.onSave(result);
+                        }
+                    }
+                });
+            }
+        }
+
+    }
+
+
+    /**
+     * The interface to be notified by a {@link RegionSaveQueue} once a RegionManager has been saved
+     * @author Jon
+     */
+    public interface SaveCallback {
+
+        /**
+         * This method will only be called on the main server thread.
+         * @param error the exception thrown while saving the RegionManager,
+         * or <code>null</code> if the changes were saved successfully
+         */
+        void onSave(@Nullable Exception error);
+
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.deadmandungeons.audioconnect.region;
+
+import com.deadmandungeons.audioconnect.messages.AudioMessage.Range;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The immutable result of resolving the audio for a set of overlapping audio regions.<br>
+ * Instances are cached and shared between every player standing in the same combination of audio regions,
+ * so two players with the same ResolvedAudio instance are guaranteed to be hearing the same audio.
+ * The {@link AudioState} of each track is interned, so a single track can be compared by reference as well.
+ * @author Jon
+ */
+public final class ResolvedAudio {
+
+    /**
+     * The ResolvedAudio for a location where no audio or audio delay applies
+     */
+    public static final ResolvedAudio NONE = new ResolvedAudio(new HashMap<String, AudioState>());
+
+    // The default track ID may be null, so immutable Guava maps cannot be used
+    private final Map<String, AudioState> statesByTrack;
+
+    private ResolvedAudio(Map<String, AudioState> statesByTrack) {
+        this.statesByTrack = Collections.unmodifiableMap(statesByTrack);
+    }
+
+    /**
+     * @return an immutable set of every track ID that has audio or an audio delay
+     */
+    public Set<String> getTrackIds() {
+        return statesByTrack.keySet();
+    }
+
+    /**
+     * @param trackId the ID of the track to get the audio state for
+     * @return the interned audio state of the given track, or <code>null</code> if the track has no audio or audio delay
+     */
+    public AudioState getAudioState(String trackId) {
+        return statesByTrack.get(trackId);
+    }
+
+    /**
+     * @return <code>true</code> if there is no audio or audio delay for any track
+     */
+    public boolean isEmpty() {
+        return statesByTrack.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ResolvedAudio" + statesByTrack;
+    }
+
+
+    static ResolvedAudio of(Map<String, ImmutableSet.Builder<String>> audioIdsByTrack, Map<String, Range> audioDelayByTrack) {
+        if ((audioIdsByTrack == null || audioIdsByTrack.isEmpty()) && (audioDelayByTrack == null || audioDelayByTrack.isEmpty())) {
+            return NONE;
+        }
+
+        Set<String> trackIds = new HashSet<>();
+        if (audioIdsByTrack != null) {
+            trackIds.addAll(audioIdsByTrack.keySet());
+        }
+        if (audioDelayByTrack != null) {
+            trackIds.addAll(audioDelayByTrack.keySet());
+        }
+
+        Map<String, AudioState> statesByTrack = new HashMap<>(trackIds.size());
+        for (String trackId : trackIds) {
+            ImmutableSet.Builder<String> audioIds = (audioIdsByTrack != null ? audioIdsByTrack.get(trackId) : null);
+            Range audioDelay = (audioDelayByTrack != null ? audioDelayByTrack.get(trackId) : null);
+            statesByTrack.put(trackId, AudioState.of(audioIds != null ? audioIds.build() : null, audioDelay));
+        }
+
+        return new ResolvedAudio(statesByTrack);
+    }
+
+}
@@ -0,0 +1,386 @@
+package com.deadmandungeons.audioconnect.region;
+
+import com.deadmandungeons.audioconnect.compat.WorldGuardAdapter;
+import com.deadmandungeons.audioconnect.flags.AudioDelay;
+import com.deadmandungeons.audioconnect.flags.AudioTrack;
+import com.sk89q.worldguard.protection.flags.SetFlag;
+import com.sk89q.worldguard.protection.managers.RegionManager;
+import com.sk89q.worldguard.protection.regions.ProtectedPolygonalRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
+import org.bukkit.util.BlockVector;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable spatial index of all the audio regions in a single world.<br>
+ * Regions are bucketed by the chunks their bounding box intersects, so a point query only needs to check
+ * the handful of audio regions in the chunk column of the point rather than every region in the world.
+ * Regions spanning more than {@link #MAX_BUCKET_CHUNKS} chunks are not bucketed and are instead checked on every query.<br>
+ * The audio flags of the <code>__global__</code> region are captured separately, so a world without any audio
+ * can be identified by {@link #hasAudio()} without querying anything.<br>
+ * The IDs of the regions that reference each audio ID in their <code>audio</code> flag are also indexed, so
+ * changes to an audio ID only need to touch the regions that actually use it.
+ * @author Jon
+ */
+public final class WorldRegionIndex {
+
+    static final String GLOBAL_REGION_ID = "__global__";
+    static final int MAX_BUCKET_CHUNKS = 4096;
+    // Search at most 3 chunks around a point for the nearest region boundary, which bounds the safe distance to 56 blocks
+    static final int MAX_SAFE_RINGS = 3;
+
+    private static final AudioRegion[] EMPTY_REGIONS = new AudioRegion[0];
+
+    private final UUID worldId;
+    private final long version;
+    private final long buildTime;
+    private final long fingerprint;
+    private final AudioRegion[] regions;
+    private final Map<String, AudioRegion> regionsById;
+    private final AudioRegion[] largeRegions;
+    private final Map<Long, AudioRegion[]> chunkBuckets;
+    private final ProtectedRegion globalRegion;
+    private final Set<AudioTrack> globalAudioTracks;
+    private final Set<AudioDelay> globalAudioDelays;
+    private final Map<String, String[]> audioRegionIds;
+
+    // Memoized AudioResolver results which are only valid for the regions of this snapshot
+    final ConcurrentHashMap<Object, ResolvedAudio> resolutions = new ConcurrentHashMap<>();
+
+    private WorldRegionIndex(UUID worldId, long version, long buildTime, long fingerprint, AudioRegion[] regions, AudioRegion[] largeRegions, Map<Long, AudioRegion[]> chunkBuckets,
+                             ProtectedRegion globalRegion, Set<AudioTrack> globalAudioTracks, Set<AudioDelay> globalAudioDelays,
+                             Map<String, String[]> audioRegionIds) {
+        this.worldId = worldId;
+        this.version = version;
+        this.buildTime = buildTime;
+        this.fingerprint = fingerprint;
+        this.regions = regions;
+        regionsById = new HashMap<>(regions.length);
+        for (AudioRegion region : regions) {
+            regionsById.put(region.getId(), region);
+        }
+        this.largeRegions = largeRegions;
+        this.chunkBuckets = chunkBuckets;
+        this.globalRegion = globalRegion;
+        this.globalAudioTracks = globalAudioTracks;
+        this.globalAudioDelays = globalAudioDelays;
+        this.audioRegionIds = audioRegionIds;
+    }
+
+    /**
+     * @return the UUID of the world this index was built for
+     */
+    public UUID getWorldId() {
+        return worldId;
+    }
+
+    /**
+     * @return the region data version of the world this index was built from
+     * @see AudioRegionIndex#getVersion(org.bukkit.World)
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} on the main server thread before the regions of this index were read.
+     * Any region change made on the main server thread before this time is reflected in this index.
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * @return the fingerprint of the audio flags of the regions in the world when this index was built
+     * @see #getFingerprint(RegionManager, SetFlag, SetFlag)
+     */
+    long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return <code>true</code> if any region in the world, including the <code>__global__</code> region,
+     * has the <code>audio</code> or <code>audio-delay</code> flag set
+     */
+    public boolean hasAudio() {
+        return regions.length > 0 || globalAudioTracks != null || globalAudioDelays != null;
+    }
+
+    /**
+     * @return the <code>__global__</code> region of the world if it has the <code>audio</code> or
+     * <code>audio-delay</code> flag set, and <code>null</code> otherwise
+     */
+    @Nullable
+    public ProtectedRegion getGlobalRegion() {
+        return (globalAudioTracks != null || globalAudioDelays != null ? globalRegion : null);
+    }
+
+    /**
+     * @return the value of the <code>audio</code> flag of the <code>__global__</code> region when this index was built
+     */
+    @Nullable
+    public Set<AudioTrack> getGlobalAudioTracks() {
+        return globalAudioTracks;
+    }
+
+    /**
+     * @return the value of the <code>audio-delay</code> flag of the <code>__global__</code> region when this index was built
+     */
+    @Nullable
+    public Set<AudioDelay> getGlobalAudioDelays() {
+        return globalAudioDelays;
+    }
+
+    /**
+     * @return an unmodifiable list of every indexed audio region in the world
+     */
+    public List<AudioRegion> getRegions() {
+        return Collections.unmodifiableList(Arrays.asList(regions));
+    }
+
+    /**
+     * @param regionId the ID of the WorldGuard region, as returned by {@link ProtectedRegion#getId()}
+     * @return the indexed audio region with the given ID, or <code>null</code> if the region did not exist
+     * or did not have any audio flags when this index was built
+     */
+    @Nullable
+    public AudioRegion getRegion(String regionId) {
+        return regionsById.get(regionId);
+    }
+
+    /**
+     * Get the IDs of the regions in the world whose <code>audio</code> flag contained any of the given audio IDs
+     * when this index was built. This includes the <code>__global__</code> region.
+     * @param audioIds the audio IDs to get the referencing regions for
+     * @return a new set of the IDs of the regions referencing the given audio IDs, which is empty if there are none
+     */
+    public Set<String> getAudioRegionIds(Collection<String> audioIds) {
+        Set<String> regionIds = new HashSet<>();
+        for (String audioId : audioIds) {
+            String[] ids = audioRegionIds.get(audioId);
+            if (ids != null) {
+                Collections.addAll(regionIds, ids);
+            }
+        }
+        return regionIds;
+    }
+
+    /**
+     * Add every audio region containing the given block coordinates to the given collection.<br>
+     * <b>Note:</b> like {@link RegionManager#getApplicableRegions}, the <code>__global__</code> region is never included.
+     * @param x the block X coordinate
+     * @param y the block Y coordinate
+     * @param z the block Z coordinate
+     * @param result the collection to add the containing regions to
+     */
+    public void getApplicableRegions(int x, int y, int z, Collection<AudioRegion> result) {
+        AudioRegion[] bucket = chunkBuckets.get(getChunkKey(x >> 4, z >> 4));
+        if (bucket != null) {
+            for (AudioRegion region : bucket) {
+                if (region.contains(x, y, z)) {
+                    result.add(region);
+                }
+            }
+        }
+        for (AudioRegion region : largeRegions) {
+            if (region.contains(x, y, z)) {
+                result.add(region);
+            }
+        }
+    }
+
+    /**
+     * Get the distance that can be moved from the given block coordinates without entering or leaving any audio region.
+     * The distance is measured in blocks along the axis of greatest movement, so the set of applicable regions
+     * is guaranteed to be the same for every block that is less than the returned distance away from the given block.<br>
+     * The buckets of the surrounding chunks are searched in rings of increasing size until the nearest region boundary
+     * is closer than the edge of the searched area, up to {@link #MAX_SAFE_RINGS} chunks away from the chunk of the given block.
+     * @param x the block X coordinate
+     * @param y the block Y coordinate
+     * @param z the block Z coordinate
+     * @return the distance to the nearest audio region boundary, which may be 0 if the given block is on a boundary
+     */
+    public int getSafeDistance(int x, int y, int z) {
+        if (regions.length == 0) {
+            return Integer.MAX_VALUE;
+        }
+        int distance = Integer.MAX_VALUE;
+        for (int i = 0; i < largeRegions.length && distance > 0; i++) {
+            distance = Math.min(distance, largeRegions[i].getBoundaryDistance(x, y, z));
+        }
+        if (chunkBuckets.isEmpty()) {
+            return distance;
+        }
+
+        // Regions that are not in the buckets of the searched chunks can only be reached by leaving the searched area
+        int localX = x & 15, localZ = z & 15;
+        int edgeDistance = Math.min(Math.min(localX, 15 - localX), Math.min(localZ, 15 - localZ)) + 1;
+        int chunkX = x >> 4, chunkZ = z >> 4;
+        for (int ring = 0; distance > 0; ring++) {
+            for (int dx = -ring; dx <= ring; dx++) {
+                // Only the outline of the ring has not been searched yet
+                int step = (dx == -ring || dx == ring ? 1 : Math.max(ring * 2, 1));
+                for (int dz = -ring; dz <= ring; dz += step) {
+                    AudioRegion[] bucket = chunkBuckets.get(getChunkKey(chunkX + dx, chunkZ + dz));
+                    if (bucket != null) {
+                        for (int i = 0; i < bucket.length && distance > 0; i++) {
+                            distance = Math.min(distance, bucket[i].getBoundaryDistance(x, y, z));
+                        }
+                    }
+                }
+            }
+            int searchedDistance = edgeDistance + (ring << 4);
+            if (distance <= searchedDistance || ring == MAX_SAFE_RINGS) {
+                return Math.min(distance, searchedDistance);
+            }
+        }
+        return distance;
+    }
+
+
+    /**
+     * Build a new index of the audio regions in the given RegionManager
+     * @param previous the previous index of the world, from which the rasterized shapes of unchanged regions are reused,
+     * or <code>null</code> if there is none
+     */
+    static WorldRegionIndex build(UUID worldId, long version, long buildTime, RegionManager regionManager, @Nullable WorldRegionIndex previous,
+                                  WorldGuardAdapter adapter, SetFlag<AudioTrack> audioFlag, SetFlag<AudioDelay> audioDelayFlag) {
+        List<AudioRegion> regions = new ArrayList<>();
+        List<AudioRegion> largeRegions = new ArrayList<>();
+        Map<Long, List<AudioRegion>> chunkBuckets = new HashMap<>();
+        Map<String, List<String>> audioRegionIds = new HashMap<>();
+        long fingerprint = 0;
+
+        for (ProtectedRegion region : regionManager.getRegions().values()) {
+            Set<AudioTrack> audioTracks = region.getFlag(audioFlag);
+            Set<AudioDelay> audioDelays = region.getFlag(audioDelayFlag);
+            fingerprint += getFingerprint(region, audioTracks, audioDelays);
+            if (region.getId().equals(GLOBAL_REGION_ID) || (audioTracks == null && audioDelays == null)) {
+                continue;
+            }
+            addAudioRegionIds(audioRegionIds, region.getId(), audioTracks);
+
+            List<BlockVector> points = null;
+            if (region instanceof ProtectedPolygonalRegion) {
+                points = adapter.getPoints((ProtectedPolygonalRegion) region);
+            }
+            AudioRegion previousRegion = (previous != null ? previous.getRegion(region.getId()) : null);
+            AudioRegion audioRegion = new AudioRegion(region, regions.size(), audioTracks, audioDelays,
+                    adapter.getMinimumPoint(region), adapter.getMaximumPoint(region), points, previousRegion);
+            regions.add(audioRegion);
+
+            int minChunkX = audioRegion.getMinX() >> 4, maxChunkX = audioRegion.getMaxX() >> 4;
+            int minChunkZ = audioRegion.getMinZ() >> 4, maxChunkZ = audioRegion.getMaxZ() >> 4;
+            long chunkCount = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+            if (chunkCount > MAX_BUCKET_CHUNKS) {
+                largeRegions.add(audioRegion);
+                continue;
+            }
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    Long chunkKey = getChunkKey(chunkX, chunkZ);
+                    List<AudioRegion> bucket = chunkBuckets.get(chunkKey);
+                    if (bucket == null) {
+                        bucket = new ArrayList<>(2);
+                        chunkBuckets.put(chunkKey, bucket);
+                    }
+                    bucket.add(audioRegion);
+                }
+            }
+        }
+
+        Map<Long, AudioRegion[]> chunkBucketArrays = new HashMap<>(chunkBuckets.size());
+        for (Map.Entry<Long, List<AudioRegion>> entry : chunkBuckets.entrySet()) {
+            chunkBucketArrays.put(entry.getKey(), entry.getValue().toArray(EMPTY_REGIONS));
+        }
+
+        ProtectedRegion globalRegion = regionManager.getRegion(GLOBAL_REGION_ID);
+        Set<AudioTrack> globalAudioTracks = null;
+        Set<AudioDelay> globalAudioDelays = null;
+        if (globalRegion != null) {
+            globalAudioTracks = globalRegion.getFlag(audioFlag);
+            globalAudioDelays = globalRegion.getFlag(audioDelayFlag);
+            addAudioRegionIds(audioRegionIds, GLOBAL_REGION_ID, globalAudioTracks);
+        }
+
+        Map<String, String[]> audioRegionIdArrays = new HashMap<>(audioRegionIds.size());
+        for (Map.Entry<String, List<String>> entry : audioRegionIds.entrySet()) {
+            audioRegionIdArrays.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+        }
+
+        return new WorldRegionIndex(worldId, version, buildTime, fingerprint, regions.toArray(EMPTY_REGIONS), largeRegions.toArray(EMPTY_REGIONS), chunkBucketArrays,
+                globalRegion, globalAudioTracks, globalAudioDelays, audioRegionIdArrays);
+    }
+
+    static WorldRegionIndex empty(UUID worldId, long version, long buildTime) {
+        return new WorldRegionIndex(worldId, version, buildTime, 0, EMPTY_REGIONS, EMPTY_REGIONS, Collections.<Long, AudioRegion[]>emptyMap(), null, null, null,
+                Collections.<String, String[]>emptyMap());
+    }
+
+    /**
+     * Compute a cheap fingerprint of the audio flags of every region in the given RegionManager.
+     * The fingerprint only changes if a region with audio flags was added, removed, redefined or had its priority changed,
+     * or if an audio flag was set or removed on any region, so it can be compared with {@link #getFingerprint()}
+     * to detect region edits that have not been reflected in an index.
+     * @param regionManager the RegionManager of the regions to fingerprint
+     * @param audioFlag the <code>audio</code> flag
+     * @param audioDelayFlag the <code>audio-delay</code> flag
+     * @return the fingerprint of the audio regions in the given RegionManager
+     */
+    static long getFingerprint(RegionManager regionManager, SetFlag<AudioTrack> audioFlag, SetFlag<AudioDelay> audioDelayFlag) {
+        long fingerprint = 0;
+        for (ProtectedRegion region : regionManager.getRegions().values()) {
+            fingerprint += getFingerprint(region, region.getFlag(audioFlag), region.getFlag(audioDelayFlag));
+        }
+        return fingerprint;
+    }
+
+    // WorldGuard replaces the region when it is redefined, and the flag value when a flag is set, so identity is enough.
+    // The sum of the region fingerprints does not depend on the iteration order of the regions.
+    private static long getFingerprint(ProtectedRegion region, Object audioTracks, Object audioDelays) {
+        if (audioTracks == null && audioDelays == null) {
+            return 0;
+        }
+        long hash = System.identityHashCode(region);
+        hash = hash * 31 + System.identityHashCode(audioTracks);
+        hash = hash * 31 + System.identityHashCode(audioDelays);
+        hash = hash * 31 + region.getPriority();
+        // Spread the bits so that the sum of similar hashes does not collide
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static void addAudioRegionIds(Map<String, List<String>> audioRegionIds, String regionId, Set<AudioTrack> audioTracks) {
+        if (audioTracks == null) {
+            return;
+        }
+        for (AudioTrack audioTrack : audioTracks) {
+            List<String> regionIds = audioRegionIds.get(audioTrack.getAudioId());
+            if (regionIds == null) {
+                regionIds = new ArrayList<>(2);
+                audioRegionIds.put(audioTrack.getAudioId(), regionIds);
+            }
+            // A region may reference the same audio ID in more than one track
+            if (regionIds.isEmpty() || !regionIds.get(regionIds.size() - 1).equals(regionId)) {
+                regionIds.add(regionId);
+            }
+        }
+    }
+
+    private static long getChunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+}
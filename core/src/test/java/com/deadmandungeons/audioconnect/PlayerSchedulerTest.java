@@ -0,0 +1,149 @@
+package com.deadmandungeons.audioconnect;
+
+import com.deadmandungeons.audioconnect.PlayerScheduler.PlayerDataWriter;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PlayerSchedulerTest {
+
+    private static final Server server = mock(Server.class);
+
+    private Plugin plugin;
+    private BukkitScheduler scheduler;
+    private PlayerDataWriter writer;
+
+    @BeforeClass
+    public static void setUpServer() {
+        when(server.getLogger()).thenReturn(Logger.getLogger("Server"));
+        when(server.getPluginManager()).thenReturn(mock(PluginManager.class));
+        when(server.isPrimaryThread()).thenReturn(true);
+        Bukkit.setServer(server);
+    }
+
+    @Before
+    public void setUp() {
+        plugin = mock(Plugin.class);
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("AudioConnect"));
+        scheduler = mock(BukkitScheduler.class);
+        when(scheduler.runTaskTimer(eq(plugin), any(Runnable.class), anyLong(), anyLong())).thenReturn(mock(BukkitTask.class));
+        when(server.getScheduler()).thenReturn(scheduler);
+        writer = mock(PlayerDataWriter.class);
+    }
+
+    @Test
+    public void testWriteDataFailureDoesNotStallOtherPlayers() {
+        PlayerScheduler playerScheduler = new PlayerScheduler(plugin, writer, 2, 2);
+        Player failingPlayer = mockPlayer("failing");
+        Player player = mockPlayer("player");
+        doThrow(new RuntimeException("Expected test exception")).when(writer).writeData(failingPlayer);
+
+        // The players are added to separate tasks, with the failing player in the task that is due first
+        playerScheduler.addPlayer(failingPlayer.getUniqueId());
+        playerScheduler.addPlayer(player.getUniqueId());
+        Runnable driverTask = getDriverTask();
+        for (int tick = 0; tick < 4; tick++) {
+            driverTask.run();
+        }
+
+        verify(writer, times(2)).writeData(failingPlayer);
+        verify(writer, times(2)).writeData(player);
+        verify(writer, times(4)).flushData();
+    }
+
+    @Test
+    public void testWriteDataFailureDoesNotStallTask() {
+        PlayerScheduler playerScheduler = new PlayerScheduler(plugin, writer, 1, 1);
+        Player failingPlayer = mockPlayer("failing");
+        Player player = mockPlayer("player");
+        doThrow(new RuntimeException("Expected test exception")).when(writer).writeData(failingPlayer);
+
+        // The failing player is processed first in the task, as members are processed in reverse order
+        playerScheduler.addPlayer(player.getUniqueId());
+        playerScheduler.addPlayer(failingPlayer.getUniqueId());
+        Runnable driverTask = getDriverTask();
+        for (int tick = 0; tick < 3; tick++) {
+            driverTask.run();
+        }
+
+        verify(writer, times(3)).writeData(failingPlayer);
+        verify(writer, times(3)).writeData(player);
+    }
+
+    @Test
+    public void testRemovePlayerDuringSplitPass() {
+        // A budget of 1 nanosecond limits each tick to processing a single player
+        PlayerScheduler playerScheduler = new PlayerScheduler(plugin, writer, 1, 1, 1);
+        Player[] players = new Player[4];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = mockPlayer("player" + i);
+            playerScheduler.addPlayer(players[i].getUniqueId());
+        }
+        Runnable driverTask = getDriverTask();
+
+        // The last player is processed first, and the pass is carried over before the removed player is processed
+        driverTask.run();
+        verify(writer).writeData(players[3]);
+        playerScheduler.removePlayer(players[1].getUniqueId());
+        driverTask.run();
+        driverTask.run();
+
+        verify(writer).writeData(players[0]);
+        verify(writer, never()).writeData(players[1]);
+        verify(writer).writeData(players[2]);
+        verify(writer).writeData(players[3]);
+    }
+
+    @Test
+    public void testRemovedPlayersDataIsRemoved() {
+        PlayerScheduler playerScheduler = new PlayerScheduler(plugin, writer, 2, 2);
+        Player removedPlayer = mockPlayer("removed");
+        Player player = mockPlayer("player");
+        playerScheduler.addPlayer(removedPlayer.getUniqueId());
+        playerScheduler.addPlayer(player.getUniqueId());
+
+        playerScheduler.removePlayer(removedPlayer.getUniqueId());
+        verify(writer).removeData(removedPlayer.getUniqueId());
+        verify(writer, never()).removeData(player.getUniqueId());
+
+        playerScheduler.clear();
+        verify(writer).removeData(player.getUniqueId());
+    }
+
+    private Player mockPlayer(String name) {
+        UUID playerId = UUID.randomUUID();
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(playerId);
+        when(player.getName()).thenReturn(name);
+        when(server.getPlayer(playerId)).thenReturn(player);
+        return player;
+    }
+
+    private Runnable getDriverTask() {
+        ArgumentCaptor<Runnable> driverTask = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).runTaskTimer(eq(plugin), driverTask.capture(), anyLong(), anyLong());
+        return driverTask.getValue();
+    }
+
+}
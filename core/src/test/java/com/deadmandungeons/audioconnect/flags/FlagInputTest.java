@@ -0,0 +1,73 @@
+package com.deadmandungeons.audioconnect.flags;
+
+import com.sk89q.worldguard.protection.flags.InvalidFlagFormat;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FlagInputTest {
+
+    @Test
+    public void testDefaultKey() throws InvalidFlagFormat {
+        assertProperties("forest", "id=forest");
+        assertProperties("id=forest", "id=forest");
+    }
+
+    @Test
+    public void testProperties() throws InvalidFlagFormat {
+        assertProperties("forest:track=background:time=night", "id=forest", "track=background", "time=night");
+        assertProperties("id=forest:time=night", "id=forest", "time=night");
+    }
+
+    @Test
+    public void testTrailingSeparators() throws InvalidFlagFormat {
+        assertProperties("forest:", "id=forest");
+        assertProperties("forest:track=background::", "id=forest", "track=background");
+    }
+
+    @Test
+    public void testFirstPropertyWithOtherKey() {
+        assertInvalid("time=night:id=forest");
+        assertInvalid("track=background:time=night");
+        assertInvalid("identifier=forest");
+        assertInvalid("=forest");
+    }
+
+    @Test
+    public void testMalformedProperties() {
+        assertInvalid("");
+        assertInvalid("forest:track");
+        assertInvalid("forest::track=background");
+        assertInvalid("forest:track=");
+        assertInvalid("forest:track=a=b");
+        assertInvalid("id=forest=night");
+    }
+
+
+    private void assertProperties(String input, String... expectedProperties) throws InvalidFlagFormat {
+        FlagInput properties = new FlagInput(input, "id", "Invalid format");
+        List<String> actualProperties = new ArrayList<>();
+        while (properties.next()) {
+            actualProperties.add(properties.getKey() + "=" + properties.getValue());
+        }
+        assertEquals(input, Arrays.asList(expectedProperties), actualProperties);
+    }
+
+    private void assertInvalid(String input) {
+        FlagInput properties = new FlagInput(input, "id", "Invalid format");
+        try {
+            while (properties.next()) {
+                continue;
+            }
+            fail("Expected '" + input + "' to be invalid");
+        } catch (InvalidFlagFormat e) {
+            assertEquals("Invalid format", e.getMessage());
+        }
+    }
+
+}
@@ -1,14 +1,18 @@
 package com.deadmandungeons.audioconnect.compat;
 
 import com.deadmandungeons.audioconnect.flags.FlagAdapter;
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.Vector;
 import com.sk89q.worldguard.bukkit.WorldGuardPlugin;
-import com.sk89q.worldguard.protection.ApplicableRegionSet;
 import com.sk89q.worldguard.protection.flags.Flag;
 import com.sk89q.worldguard.protection.flags.SetFlag;
 import com.sk89q.worldguard.protection.managers.RegionManager;
-import org.bukkit.Location;
+import com.sk89q.worldguard.protection.regions.ProtectedPolygonalRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
 import org.bukkit.World;
+import org.bukkit.util.BlockVector;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -37,12 +41,28 @@ class WorldGuardAdapterV6_1_3 extends WorldGuardAdapter {
     }
 
     @Override
-    public RegionManager getRegionManager(World world) {
+    protected RegionManager loadRegionManager(World world) {
         return WorldGuardPlugin.inst().getRegionManager(world);
     }
 
     @Override
-    public ApplicableRegionSet getApplicableRegions(RegionManager regionManager, Location location) {
-        return regionManager.getApplicableRegions(location);
+    public BlockVector getMinimumPoint(ProtectedRegion region) {
+        Vector point = region.getMinimumPoint();
+        return new BlockVector(point.getBlockX(), point.getBlockY(), point.getBlockZ());
+    }
+
+    @Override
+    public BlockVector getMaximumPoint(ProtectedRegion region) {
+        Vector point = region.getMaximumPoint();
+        return new BlockVector(point.getBlockX(), point.getBlockY(), point.getBlockZ());
+    }
+
+    @Override
+    public List<BlockVector> getPoints(ProtectedPolygonalRegion region) {
+        List<BlockVector> points = new ArrayList<>();
+        for (BlockVector2D point : region.getPoints()) {
+            points.add(new BlockVector(point.getBlockX(), 0, point.getBlockZ()));
+        }
+        return points;
     }
 }
@@ -0,0 +1,90 @@
+package com.deadmandungeons.audioconnect.compat;
+
+import com.deadmandungeons.audioconnect.flags.FlagAdapter;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldguard.WorldGuard;
+import com.sk89q.worldguard.protection.flags.Flag;
+import com.sk89q.worldguard.protection.flags.SetFlag;
+import com.sk89q.worldguard.protection.flags.registry.FlagRegistry;
+import com.sk89q.worldguard.protection.managers.RegionManager;
+import com.sk89q.worldguard.protection.regions.ProtectedPolygonalRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
+import com.sk89q.worldguard.protection.regions.RegionContainer;
+import org.bukkit.World;
+import org.bukkit.util.BlockVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class WorldGuardAdapterV7 extends WorldGuardAdapter {
+
+    private final WorldGuard worldGuard;
+    private final FlagRegistry flagRegistry;
+
+    private RegionContainer regionContainer;
+
+    WorldGuardAdapterV7() {
+        try {
+            worldGuard = WorldGuard.getInstance();
+            flagRegistry = worldGuard.getFlagRegistry();
+        } catch (Exception e) {
+            throw new UnsupportedOperationException("Failed to initialize adapter for WorldGuard v7.x!", e);
+        }
+    }
+
+    @Override
+    public void initRegionAdapter() {
+        try {
+            regionContainer = worldGuard.getPlatform().getRegionContainer();
+        } catch (Exception e) {
+            throw new UnsupportedOperationException("Failed to initialize adapter for WorldGuard v7.x!", e);
+        }
+    }
+
+    @Override
+    public <T, F extends Flag<T> & FlagAdapter<T>> SetFlag<T> initSetFlag(String flagName, F flag) {
+        return new SetFlag<>(flagName, flag);
+    }
+
+    @Override
+    public void installFlags(Flag<?>... flags) {
+        flagRegistry.registerAll(Arrays.asList(flags));
+    }
+
+    @Override
+    public List<RegionManager> getRegionManagers() {
+        return regionContainer.getLoaded();
+    }
+
+    @Override
+    protected RegionManager loadRegionManager(World world) {
+        return regionContainer.get(BukkitAdapter.adapt(world));
+    }
+
+    @Override
+    public BlockVector getMinimumPoint(ProtectedRegion region) {
+        return toBlockVector(region.getMinimumPoint());
+    }
+
+    @Override
+    public BlockVector getMaximumPoint(ProtectedRegion region) {
+        return toBlockVector(region.getMaximumPoint());
+    }
+
+    @Override
+    public List<BlockVector> getPoints(ProtectedPolygonalRegion region) {
+        List<BlockVector> points = new ArrayList<>();
+        for (BlockVector2 point : region.getPoints()) {
+            points.add(new BlockVector(point.getBlockX(), 0, point.getBlockZ()));
+        }
+        return points;
+    }
+
+    private static BlockVector toBlockVector(BlockVector3 point) {
+        return new BlockVector(point.getBlockX(), point.getBlockY(), point.getBlockZ());
+    }
+
+}